@@ -0,0 +1,29 @@
+import net.ltgt.gradle.errorprone.errorprone
+
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+dependencies {
+    jmhImplementation(project(":allezgo-service"))
+    jmhImplementation("com.fasterxml.jackson.core:jackson-databind")
+    jmhImplementation("com.fasterxml.jackson.datatype:jackson-datatype-guava")
+    jmhImplementation("com.fasterxml.jackson.datatype:jackson-datatype-jdk8")
+    jmhImplementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+    jmhImplementation("com.google.guava:guava")
+    jmhImplementation("com.markelliot.result:result")
+    jmhCompileOnly("com.jakewharton.nopen:nopen-annotations")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
+
+// JMH generates non-final subclasses of each benchmark that our checks would reject
+tasks.named<JavaCompile>("jmhCompileGeneratedClasses") {
+    options.errorprone.enabled.set(false)
+}
@@ -0,0 +1,177 @@
+package io.allezgo.benchmarks;
+
+import com.jakewharton.nopen.annotation.Open;
+import com.markelliot.result.Result;
+import io.allezgo.adapters.garmin.GarminActivitiesResponse;
+import io.allezgo.adapters.garmin.GarminUpdateActivityResponse;
+import io.allezgo.adapters.garmin.GarminUpdateActivityTitleRequest;
+import io.allezgo.adapters.peloton.PelotonToFit;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import io.allezgo.client.Endpoint;
+import io.allezgo.client.Forms;
+import io.allezgo.client.HttpError;
+import io.allezgo.client.ObjectHttpClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the HTTP client layer: building {@link Endpoint}s, formatting {@link Forms}, creating
+ * {@link HttpError}s, and complete {@link ObjectHttpClient} round trips, including request and
+ * response conversion, against a loopback server replaying recorded Peloton and Garmin payloads.
+ *
+ * <p>The GC profiler's {@code gc.alloc.rate.norm} gives the bytes allocated per request.
+ */
+@Open
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpClientBenchmark {
+    private static final Endpoint.Base PELOTON = Endpoint.of("https://api.onepeloton.com/");
+
+    private final ObjectHttpClient client = new ObjectHttpClient();
+
+    private LoopbackServer server;
+    private Endpoint performanceGraph;
+    private Endpoint rideDetails;
+    private Endpoint activities;
+    private Endpoint updateActivity;
+    private Endpoint missing;
+    private String tcx;
+    private byte[] fit;
+    private Exception failure;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticRide ride = SyntheticRide.of(45);
+        server = LoopbackServer.start(
+                Map.of(
+                        "/api/workout/workout45/performance_graph", ride.performanceGraphJson(),
+                        "/api/ride/ride0001/details", resource("peloton-ride.json"),
+                        "/proxy/activitylist-service/activities/search/activities", resource("garmin-activities.json"),
+                        "/proxy/activity-service/activity/6430000000", "{}".getBytes(StandardCharsets.UTF_8)),
+                0);
+        Endpoint.Base base = server.base();
+        performanceGraph = base.path("api", "workout", "workout45", "performance_graph")
+                .query("every_n", 1)
+                .header("cookie", "peloton_session_id=0123456789abcdef")
+                .build();
+        rideDetails = base.path("api", "ride", "ride0001", "details")
+                .query("stream_source", "multichannel")
+                .header("cookie", "peloton_session_id=0123456789abcdef")
+                .build();
+        activities = base.path("proxy", "activitylist-service", "activities", "search", "activities")
+                .query("limit", 20)
+                .query("start", 0)
+                .header("nk", "NT")
+                .header("cookie", "SESSIONID=0123456789abcdef; GARMIN-SSO-GUID=fedcba9876543210")
+                .build();
+        updateActivity = base.path("proxy", "activity-service", "activity", "6430000000")
+                .header("x-http-method-override", "PUT")
+                .header("nk", "NT")
+                .header("cookie", "SESSIONID=0123456789abcdef; GARMIN-SSO-GUID=fedcba9876543210")
+                .build();
+        missing = base.path("missing").build();
+
+        tcx = PelotonToTcx.convertToTcx(ride.activity(), ride.ride(), ride.metrics())
+                .value();
+        fit = PelotonToFit.convertToFit(ride.activity(), ride.ride(), ride.metrics())
+                .value();
+        failure = new IOException("Connection reset", new IOException("Broken pipe"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Endpoint buildEndpoint() {
+        return PELOTON.path("api", "user", "0123456789abcdef", "workouts")
+                .query("joins", "ride,ride.instructor")
+                .query("limit", 20)
+                .query("page", 0)
+                .header("cookie", "peloton_session_id=0123456789abcdef")
+                .build();
+    }
+
+    @Benchmark
+    public Forms.MultipartUpload formatMultipartString() {
+        return Forms.MultipartUpload.of("activity.tcx", tcx);
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher multipartBodyPublisher() {
+        return Forms.multipartBodyPublisher(Forms.newBoundary(), "activity.fit", fit);
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher encodeLoginForm() {
+        return Forms.bodyPublisher(Map.of(
+                "username", "rider@example.com", "password", "p@ss word&1", "_eventId", "submit", "embed", "true"));
+    }
+
+    @Benchmark
+    public Result<Object, HttpError> httpErrorWithComment() {
+        return HttpError.of("Upload was a success but the response contained no information");
+    }
+
+    @Benchmark
+    public Result<Object, HttpError> httpErrorWithException() {
+        return HttpError.of("Error while making HTTP request", failure);
+    }
+
+    @Benchmark
+    public Result<PerformanceSummary, HttpError> getPerformanceGraph() {
+        return client.get(performanceGraph, PerformanceSummary.class);
+    }
+
+    @Benchmark
+    public Result<Ride, HttpError> getRideDetails() {
+        return client.get(rideDetails, Ride.class);
+    }
+
+    @Benchmark
+    public Result<GarminActivitiesResponse, HttpError> getGarminActivities() {
+        return client.get(activities, GarminActivitiesResponse.class);
+    }
+
+    @Benchmark
+    public Result<GarminUpdateActivityResponse, HttpError> postUpdateActivity() {
+        return client.post(
+                updateActivity,
+                new GarminUpdateActivityTitleRequest(6430000000L, "45 min Power Zone Ride with Matt Wilpers"),
+                GarminUpdateActivityResponse.class);
+    }
+
+    @Benchmark
+    public Result<Ride, HttpError> getNotFound() {
+        return client.get(missing, Ride.class);
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = HttpClientBenchmark.class.getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+}
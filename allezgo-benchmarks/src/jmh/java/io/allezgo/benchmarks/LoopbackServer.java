@@ -0,0 +1,109 @@
+package io.allezgo.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.allezgo.client.Endpoint;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local HTTP server that stands in for a remote API. Every request body is drained and answered
+ * with the JSON response recorded for its path, or a 404 when there is none.
+ *
+ * <p>When constructed with a non-zero uplink bandwidth the server holds each response until the
+ * request body would have finished arriving over a link of that speed, so benchmarks can observe how
+ * request size translates to latency on a constrained connection without leaving the machine.
+ */
+final class LoopbackServer implements Closeable {
+    private final HttpServer server;
+    private final Map<String, byte[]> responses;
+    private final long uplinkKilobitsPerSecond;
+
+    private volatile long lastRequestBytes;
+
+    private LoopbackServer(HttpServer server, Map<String, byte[]> responses, long uplinkKilobitsPerSecond) {
+        this.server = server;
+        this.responses = responses;
+        this.uplinkKilobitsPerSecond = uplinkKilobitsPerSecond;
+    }
+
+    /**
+     * Starts a server on an ephemeral loopback port that answers requests for each path with the
+     * given response; zero bandwidth means an unconstrained link.
+     */
+    static LoopbackServer start(Map<String, byte[]> responses, long uplinkKilobitsPerSecond) throws IOException {
+        // without TCP_NODELAY small responses wait out delayed ACKs, adding ~40ms to each request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // serve requests concurrently so multi-threaded benchmarks aren't serialized by the server
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "loopback-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        LoopbackServer loopback = new LoopbackServer(server, Map.copyOf(responses), uplinkKilobitsPerSecond);
+        server.createContext("/", loopback::handle);
+        server.start();
+        return loopback;
+    }
+
+    Endpoint.Base base() {
+        return Endpoint.of("http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/");
+    }
+
+    /** Size in bytes of the body of the most recently received request. */
+    long lastRequestBytes() {
+        return lastRequestBytes;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream body = exchange.getRequestBody()) {
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                bytes += read;
+            }
+        }
+        lastRequestBytes = bytes;
+
+        if (uplinkKilobitsPerSecond > 0) {
+            long transferNanos = TimeUnit.SECONDS.toNanos(bytes * 8) / (uplinkKilobitsPerSecond * 1000);
+            long remainingNanos = transferNanos - (System.nanoTime() - start);
+            if (remainingNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        byte[] response = responses.get(exchange.getRequestURI().getPath());
+        if (response == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdown();
+    }
+}
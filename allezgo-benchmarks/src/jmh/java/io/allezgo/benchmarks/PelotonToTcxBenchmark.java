@@ -0,0 +1,84 @@
+package io.allezgo.benchmarks;
+
+import com.jakewharton.nopen.annotation.Open;
+import io.allezgo.adapters.fit.Fit;
+import io.allezgo.adapters.fit.FitEncoder;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Sampling;
+import io.allezgo.adapters.tcx.Tcx;
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import io.allezgo.adapters.tcx.TrainingCenterDatabase;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each stage of turning a Peloton workout into an upload separately: reading the {@code
+ * performance_graph} JSON, converting metrics to trackpoints, and rendering trackpoints as TCX or
+ * FIT, plus the whole TCX path end to end.
+ *
+ * <p>Run with {@code ./gradlew :allezgo-benchmarks:jmh}; the GC profiler reports bytes allocated per
+ * operation as {@code gc.alloc.rate.norm}.
+ */
+@Open
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PelotonToTcxBenchmark {
+    @Param({"20", "45", "90", "180"})
+    public int minutes;
+
+    private SyntheticRide ride;
+    private Instant start;
+    private String notes;
+    private TrackpointBuffer trackpoints;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ride = SyntheticRide.of(minutes);
+        start = PelotonToTcx.start(ride.activity());
+        notes = PelotonToTcx.notes(ride.ride());
+        trackpoints = PelotonToTcx.trackpoints(ride.activity(), ride.ride(), ride.metrics(), Sampling.FULL);
+    }
+
+    @Benchmark
+    public PerformanceSummary deserialize() throws IOException {
+        return SyntheticRide.mapper.readValue(ride.performanceGraphJson(), PerformanceSummary.class);
+    }
+
+    @Benchmark
+    public TrackpointBuffer convert() {
+        return PelotonToTcx.trackpoints(ride.activity(), ride.ride(), ride.metrics(), Sampling.FULL);
+    }
+
+    @Benchmark
+    public Tcx renderTcx() {
+        return TrainingCenterDatabase.render(notes, start, trackpoints);
+    }
+
+    @Benchmark
+    public Fit renderFit() {
+        return FitEncoder.encode(start, trackpoints);
+    }
+
+    @Benchmark
+    public Tcx convertToTcx() {
+        return PelotonToTcx.convertToTcx(ride.activity(), ride.ride(), ride.metrics());
+    }
+}
@@ -0,0 +1,169 @@
+package io.allezgo.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * A Peloton ride of a given length built from deterministic pseudo-random samples, in both its
+ * JSON wire form and deserialized form.
+ *
+ * <p>Rides have a five minute warmup and cooldown around alternating five minute efforts and
+ * recoveries, and one sample per second, matching what Peloton returns for {@code every_n=1}.
+ */
+record SyntheticRide(
+        int minutes, byte[] performanceGraphJson, PelotonActivity activity, Ride ride, PerformanceSummary metrics) {
+
+    /** Configured like the mapper {@link io.allezgo.client.ObjectHttpClient} reads responses with. */
+    static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final long START = 1615734566L;
+
+    static SyntheticRide of(int minutes) {
+        int seconds = minutes * 60;
+        Random random = new Random(minutes);
+        ArrayNode segments = segments(seconds);
+
+        ObjectNode graph = mapper.createObjectNode();
+        graph.put("duration", seconds);
+        ArrayNode ticks = graph.putArray("seconds_since_pedaling_start");
+        for (int i = 1; i <= seconds; i++) {
+            ticks.add(i);
+        }
+        ArrayNode metrics = graph.putArray("metrics");
+        double[] output = new double[seconds];
+        double[] speed = new double[seconds];
+        for (int i = 0; i < seconds; i++) {
+            boolean effort = (i / 300) % 2 == 1 && i >= 300 && i < seconds - 300;
+            output[i] = Math.round(((effort ? 230.0 : 150.0) + 25.0 * random.nextGaussian()) * 10.0) / 10.0;
+            speed[i] = Math.round(Math.cbrt(output[i]) * 300.0) / 100.0;
+        }
+        metrics.add(metric("Output", "watts", output));
+        metrics.add(metric("Cadence", "rpm", series(random, seconds, 80.0, 8.0)));
+        metrics.add(metric("Resistance", "%", series(random, seconds, 45.0, 5.0)));
+        metrics.add(metric("Speed", "mph", speed));
+        metrics.add(metric("Heart Rate", "bpm", series(random, seconds, 140.0, 12.0)));
+        ArrayNode summaries = graph.putArray("summaries");
+        summaries.add(summary("Total Output", "kj", seconds / 6));
+        summaries.add(summary("Distance", "mi", seconds / 180));
+        summaries.add(summary("Calories", "kcal", seconds / 5));
+        ArrayNode averages = graph.putArray("average_summaries");
+        averages.add(summary("Avg Output", "watts", 180));
+        averages.add(summary("Avg Cadence", "rpm", 80));
+        graph.set("segment_list", segments);
+
+        ObjectNode ride = mapper.createObjectNode();
+        ObjectNode description = ride.putObject("ride");
+        description.put("id", "ride" + minutes);
+        description.put("title", minutes + " min Power Zone Ride");
+        description.put("description", "A synthetic ride for benchmarks.");
+        description.put("duration", seconds);
+        description.put("pedaling_start_offset", 0);
+        description.put("pedaling_end_offset", seconds);
+        description.put("pedaling_duration", seconds);
+        description.putArray("metrics").add("heart_rate").add("cadence").add("calories");
+        description.putObject("instructor").put("name", "Benchmark");
+        ObjectNode rideAverages = ride.putObject("averages");
+        rideAverages.put("average_total_work", seconds / 6);
+        rideAverages.put("average_distance", seconds / 180.0);
+        rideAverages.put("average_calories", seconds / 5);
+        rideAverages.put("average_avg_power", 180);
+        rideAverages.put("average_avg_speed", 17.5);
+        rideAverages.put("average_avg_cadence", 80);
+        rideAverages.put("average_avg_resistence", 45);
+        ride.putObject("segments").set("segment_list", segments);
+
+        ObjectNode workout = mapper.createObjectNode();
+        workout.put("id", "workout" + minutes);
+        workout.put("peloton_id", "peloton" + minutes);
+        workout.put("user_id", "user0001");
+        workout.put("name", "Cycling Workout");
+        workout.put("status", "COMPLETE");
+        workout.put("created", START);
+        workout.put("device_type", "home_bike_v1");
+        workout.put("platform", "home_bike");
+        workout.put("created_at", START);
+        workout.put("device_time_created_at", START);
+        workout.put("start_time", START);
+        workout.put("end_time", START + seconds);
+        workout.put("fitness_discipline", "cycling");
+        workout.put("workout_type", "class");
+        workout.put("metrics_type", "cycling");
+        workout.put("timezone", "America/New_York");
+        workout.put("total_work", seconds * 180.0);
+        workout.set("ride", description);
+
+        try {
+            byte[] performanceGraphJson = mapper.writeValueAsBytes(graph);
+            return new SyntheticRide(
+                    minutes,
+                    performanceGraphJson,
+                    mapper.treeToValue(workout, PelotonActivity.class),
+                    mapper.treeToValue(ride, Ride.class),
+                    mapper.readValue(performanceGraphJson, PerformanceSummary.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ArrayNode segments(int seconds) {
+        ArrayNode segments = mapper.createArrayNode();
+        for (int start = 0; start < seconds; start += 300) {
+            String name = start == 0 ? "Warmup" : start + 300 >= seconds ? "Cool Down" : "Ride";
+            segments.addObject()
+                    .put("name", name)
+                    .put("start_time_offset", start)
+                    .put("length", Math.min(300, seconds - start));
+        }
+        return segments;
+    }
+
+    private static double[] series(Random random, int seconds, double mean, double deviation) {
+        double[] values = new double[seconds];
+        for (int i = 0; i < seconds; i++) {
+            values[i] = Math.round(mean + deviation * random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static ObjectNode metric(String name, String unit, double[] values) {
+        ObjectNode metric = mapper.createObjectNode();
+        metric.put("display_name", name);
+        metric.put("display_unit", unit);
+        double sum = 0.0;
+        double max = 0.0;
+        ArrayNode array = metric.putArray("values");
+        for (double value : values) {
+            array.add(value);
+            sum += value;
+            max = Math.max(max, value);
+        }
+        metric.put("average_value", Math.round(sum / values.length * 10.0) / 10.0);
+        metric.put("max_value", max);
+        return metric;
+    }
+
+    private static ObjectNode summary(String name, String unit, int value) {
+        ObjectNode summary = mapper.createObjectNode();
+        summary.put("display_name", name);
+        summary.put("display_unit", unit);
+        summary.put("value", value);
+        return summary;
+    }
+}
@@ -0,0 +1,108 @@
+package io.allezgo.benchmarks;
+
+import com.jakewharton.nopen.annotation.Open;
+import io.allezgo.adapters.fit.FitEncoder;
+import io.allezgo.adapters.garmin.GarminUploadResponse;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.Sampling;
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import io.allezgo.adapters.tcx.TrainingCenterDatabase;
+import io.allezgo.client.Endpoint;
+import io.allezgo.client.HttpError;
+import io.allezgo.client.ObjectHttpClient;
+import io.allezgo.client.UploadContent;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares uploading a 45 minute ride as a plain file with uploading it as a zip archive, against a
+ * local server standing in for Garmin's upload service.
+ *
+ * <p>Latency is measured for an unconstrained loopback link, where compression only adds CPU time,
+ * and for a simulated 5 Mbit/s uplink, where fewer bytes on the wire should win. The number of bytes
+ * sent per upload is printed at the end of each trial.
+ */
+@Open
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+    private static final byte[] RESPONSE =
+            "{\"detailedImportResult\":{\"uploadId\":\"1\",\"successes\":[{\"internalId\":1}]}}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectHttpClient client = new ObjectHttpClient();
+
+    @Param({"tcx", "fit"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    @Param({"0", "5000"})
+    public long uplinkKilobitsPerSecond;
+
+    private LoopbackServer server;
+    private Endpoint endpoint;
+    private String filename;
+    private UploadContent content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticRide synthetic = SyntheticRide.of(45);
+        Instant start = PelotonToTcx.start(synthetic.activity());
+        String notes = PelotonToTcx.notes(synthetic.ride());
+        TrackpointBuffer ride =
+                PelotonToTcx.trackpoints(synthetic.activity(), synthetic.ride(), synthetic.metrics(), Sampling.FULL);
+        UploadContent activity =
+                switch (format) {
+                    case "tcx" -> out -> {
+                        OutputStreamWriter writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                        TrainingCenterDatabase.write(writer, notes, start, ride);
+                    };
+                    case "fit" -> {
+                        byte[] fit = FitEncoder.encode(start, ride).value();
+                        yield out -> out.write(fit);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown format: " + format);
+                };
+        String activityFilename = "activity." + format;
+
+        server = LoopbackServer.start(Map.of("/upload", RESPONSE), uplinkKilobitsPerSecond);
+        endpoint = server.base().path("upload").build();
+        filename = compressed ? "activity.zip" : activityFilename;
+        content = compressed ? activity.zipped(activityFilename) : activity;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("request body bytes per upload: " + server.lastRequestBytes());
+        server.close();
+    }
+
+    @Benchmark
+    public GarminUploadResponse upload() {
+        return client.upload(endpoint, filename, content, GarminUploadResponse.class)
+                .orElseThrow(HttpError::toException);
+    }
+}
@@ -2,14 +2,33 @@ package io.allezgo;
 
 import com.markelliot.barista.Server;
 import com.markelliot.barista.tracing.Spans;
+import io.allezgo.config.Configuration;
+import io.allezgo.convert.BulkConverter;
+import io.allezgo.endpoints.ExportPelotonRides;
+import io.allezgo.endpoints.ScheduledSync;
 import io.allezgo.endpoints.SyncPelotonToGarmin;
+import io.allezgo.endpoints.SyncPelotonToGarminBatch;
 import io.allezgo.endpoints.SyncPelotonToGarminEndpoints;
+import io.allezgo.endpoints.SyncPelotonToGarminJobs;
+import io.allezgo.endpoints.SyncPelotonToGarminJobsEndpoints;
+import io.allezgo.endpoints.SyncPelotonToGarminStream;
 import io.allezgo.events.Events;
+import io.allezgo.server.StreamingServer;
+import io.allezgo.store.SyncLedger;
+import io.allezgo.store.WorkoutStore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
 
 public final class Main {
     private Main() {}
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("convert")) {
+            convert(args);
+            return;
+        }
         if (args.length != 0) {
             System.err.println("Unexpected command line arguments.");
             return;
@@ -17,12 +36,60 @@ public final class Main {
 
         Spans.register("honeycomb.io", cs -> Events.span("allezgo", cs));
 
+        Optional<WorkoutStore> store = Optional.ofNullable(System.getenv("ALLEZGO_WORKOUT_STORE"))
+                .map(directory -> WorkoutStore.open(Path.of(directory)));
+
+        Optional<SyncLedger> ledger = Optional.ofNullable(System.getenv("ALLEZGO_SYNC_LEDGER"))
+                .map(directory -> SyncLedger.open(Path.of(directory)));
+
+        SyncPelotonToGarmin sync = new SyncPelotonToGarmin(store, ledger);
+        Optional.ofNullable(System.getenv("ALLEZGO_SCHEDULED_ACCOUNTS"))
+                .map(file -> new ScheduledSync(sync, Configuration.listFromFile(new File(file))))
+                .ifPresent(ScheduledSync::start);
+
         Server.builder()
                 .disableTls() // our host provides this for us
-                .endpoints(new SyncPelotonToGarminEndpoints(new SyncPelotonToGarmin()))
+                .endpoints(new SyncPelotonToGarminEndpoints(sync))
+                .endpoints(new SyncPelotonToGarminJobsEndpoints(new SyncPelotonToGarminJobs(sync)))
                 .allowOrigin("https://allezgo.io")
                 .allowOrigin("http://localhost:8080") // for development
                 .tracingRate(1.0)
                 .start();
+
+        ExportPelotonRides export = new ExportPelotonRides(store);
+        StreamingServer.builder()
+                .port(Optional.ofNullable(System.getenv("ALLEZGO_STREAMING_PORT"))
+                        .map(Integer::parseInt)
+                        .orElse(8444))
+                .put("/api/export/peloton-rides", ExportPelotonRides.Request.class, export::call)
+                .put(
+                        "/api/synchronize/peloton-to-garmin/stream",
+                        SyncPelotonToGarmin.Request.class,
+                        SyncPelotonToGarminStream.sync(sync)::call)
+                .put(
+                        "/api/synchronize/peloton-to-garmin/backfill",
+                        SyncPelotonToGarmin.BackfillRequest.class,
+                        SyncPelotonToGarminStream.backfill(sync)::call)
+                .put(
+                        "/api/synchronize/peloton-to-garmin/batch",
+                        SyncPelotonToGarminBatch.BatchRequest.class,
+                        new SyncPelotonToGarminBatch(sync)::call)
+                .allowOrigin("https://allezgo.io")
+                .allowOrigin("http://localhost:8080") // for development
+                .start();
+    }
+
+    /**
+     * Converts saved Peloton workouts to files offline, see {@link BulkConverter}:
+     * {@code convert <input directory> <output directory> [tcx|fit]}.
+     */
+    private static void convert(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: convert <input directory> <output directory> [tcx|fit]");
+            return;
+        }
+        BulkConverter.Format format = args.length == 4 ? BulkConverter.Format.parse(args[3]) : BulkConverter.Format.TCX;
+        BulkConverter converter = new BulkConverter(format, Runtime.getRuntime().availableProcessors());
+        System.out.println(converter.convert(Path.of(args[1]), Path.of(args[2])).describe());
     }
 }
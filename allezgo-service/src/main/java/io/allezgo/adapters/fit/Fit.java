@@ -0,0 +1,8 @@
+package io.allezgo.adapters.fit;
+
+@SuppressWarnings("ArrayRecordComponent")
+public record Fit(byte[] value) {
+    public static Fit of(byte[] value) {
+        return new Fit(value);
+    }
+}
@@ -0,0 +1,364 @@
+package io.allezgo.adapters.fit;
+
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import io.allezgo.units.Miles;
+import io.allezgo.units.MilesPerHour;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Encodes a {@link TrackpointBuffer} as a binary FIT activity file.
+ *
+ * <p>The file contains a {@code file_id} message, timer start and stop events, one {@code record}
+ * per trackpoint, one {@code lap} per lap, and a single {@code session} and {@code activity}. All
+ * messages use normal record headers and little-endian fields, and the size of every message is
+ * fixed, so the file is encoded into a single exactly-sized array.
+ *
+ * <p>See the FIT protocol and profile documentation in the FIT SDK for the meaning of message and
+ * field numbers.
+ */
+public final class FitEncoder {
+    /** Seconds between the Unix epoch and the FIT epoch of 1989-12-31T00:00:00Z. */
+    static final long FIT_EPOCH_OFFSET_SECONDS = 631065600L;
+
+    static final int HEADER_SIZE = 14;
+    private static final int PROTOCOL_VERSION = 0x10;
+    private static final int PROFILE_VERSION = 2100;
+
+    private static final byte ENUM = 0x00;
+    private static final byte UINT8 = 0x02;
+    private static final byte UINT16 = (byte) 0x84;
+    private static final byte UINT32 = (byte) 0x86;
+
+    private static final int MANUFACTURER_DEVELOPMENT = 255;
+    private static final int FILE_TYPE_ACTIVITY = 4;
+    private static final int SPORT_CYCLING = 2;
+    private static final int SUB_SPORT_INDOOR_CYCLING = 6;
+    private static final int EVENT_TIMER = 0;
+    private static final int EVENT_SESSION = 8;
+    private static final int EVENT_LAP = 9;
+    private static final int EVENT_ACTIVITY = 26;
+    private static final int EVENT_TYPE_START = 0;
+    private static final int EVENT_TYPE_STOP = 1;
+    private static final int EVENT_TYPE_STOP_ALL = 4;
+
+    private static final int[] CRC_TABLE = {
+        0x0000, 0xCC01, 0xD801, 0x1400, 0xF001, 0x3C00, 0x2800, 0xE401,
+        0xA001, 0x6C00, 0x7800, 0xB401, 0x5000, 0x9C01, 0x8801, 0x4400
+    };
+
+    private static final Message FILE_ID =
+            new Message(0, 0, List.of(field(0, ENUM), field(1, UINT16), field(2, UINT16), field(4, UINT32)));
+    private static final Message EVENT =
+            new Message(1, 21, List.of(field(253, UINT32), field(0, ENUM), field(1, ENUM)));
+    private static final Message RECORD = new Message(
+            2,
+            20,
+            List.of(
+                    field(253, UINT32),
+                    field(3, UINT8),
+                    field(4, UINT8),
+                    field(5, UINT32),
+                    field(6, UINT16),
+                    field(7, UINT16)));
+    private static final Message LAP = new Message(
+            3,
+            19,
+            List.of(
+                    field(254, UINT16),
+                    field(253, UINT32),
+                    field(0, ENUM),
+                    field(1, ENUM),
+                    field(2, UINT32),
+                    field(7, UINT32),
+                    field(8, UINT32),
+                    field(9, UINT32),
+                    field(11, UINT16),
+                    field(13, UINT16),
+                    field(14, UINT16),
+                    field(15, UINT8),
+                    field(16, UINT8),
+                    field(17, UINT8),
+                    field(18, UINT8),
+                    field(19, UINT16),
+                    field(20, UINT16),
+                    field(23, ENUM),
+                    field(24, ENUM),
+                    field(25, ENUM),
+                    field(39, ENUM)));
+    private static final Message SESSION = new Message(
+            4,
+            18,
+            List.of(
+                    field(254, UINT16),
+                    field(253, UINT32),
+                    field(0, ENUM),
+                    field(1, ENUM),
+                    field(2, UINT32),
+                    field(5, ENUM),
+                    field(6, ENUM),
+                    field(7, UINT32),
+                    field(8, UINT32),
+                    field(9, UINT32),
+                    field(11, UINT16),
+                    field(14, UINT16),
+                    field(15, UINT16),
+                    field(16, UINT8),
+                    field(17, UINT8),
+                    field(18, UINT8),
+                    field(19, UINT8),
+                    field(20, UINT16),
+                    field(21, UINT16),
+                    field(25, UINT16),
+                    field(26, UINT16)));
+    private static final Message ACTIVITY = new Message(
+            5,
+            34,
+            List.of(
+                    field(253, UINT32),
+                    field(0, UINT32),
+                    field(1, UINT16),
+                    field(2, ENUM),
+                    field(3, ENUM),
+                    field(4, ENUM)));
+
+    private FitEncoder() {}
+
+    public static Fit encode(Instant start, TrackpointBuffer trackpoints) {
+        int dataSize = FILE_ID.definitionSize()
+                + FILE_ID.dataSize()
+                + EVENT.definitionSize()
+                + 2 * EVENT.dataSize()
+                + RECORD.definitionSize()
+                + trackpoints.size() * RECORD.dataSize()
+                + LAP.definitionSize()
+                + trackpoints.lapCount() * LAP.dataSize()
+                + SESSION.definitionSize()
+                + SESSION.dataSize()
+                + ACTIVITY.definitionSize()
+                + ACTIVITY.dataSize();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + dataSize + 2).order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.put((byte) HEADER_SIZE);
+        buf.put((byte) PROTOCOL_VERSION);
+        buf.putShort((short) PROFILE_VERSION);
+        buf.putInt(dataSize);
+        buf.put(".FIT".getBytes(StandardCharsets.US_ASCII));
+        buf.putShort((short) crc(buf.array(), 0, 12));
+
+        long startTime = fitTime(start.toEpochMilli());
+        long endTime = trackpoints.size() > 0 ? fitTime(trackpoints.timeMillis(trackpoints.size() - 1)) : startTime;
+
+        FILE_ID.writeDefinition(buf);
+        buf.put(FILE_ID.dataHeader());
+        buf.put((byte) FILE_TYPE_ACTIVITY);
+        putUint16(buf, MANUFACTURER_DEVELOPMENT);
+        putUint16(buf, 0);
+        putUint32(buf, startTime);
+
+        EVENT.writeDefinition(buf);
+        writeEvent(buf, startTime, EVENT_TYPE_START);
+
+        RECORD.writeDefinition(buf);
+        LAP.writeDefinition(buf);
+        long totalSeconds = 0;
+        int totalCalories = 0;
+        double maximumSpeed = 0.0;
+        int maximumHeartRate = 0;
+        int maximumCadence = 0;
+        double maximumPower = 0.0;
+        double heartRateSum = 0.0;
+        double cadenceSum = 0.0;
+        double powerSum = 0.0;
+        int samples = 0;
+        for (int lap = 0; lap < trackpoints.lapCount(); lap++) {
+            for (int i = trackpoints.lapFirst(lap); i < trackpoints.lapEnd(lap); i++) {
+                writeRecord(buf, trackpoints, i);
+            }
+            writeLap(buf, trackpoints, lap);
+
+            int lapSamples = trackpoints.lapSamples(lap);
+            samples += lapSamples;
+            totalSeconds += trackpoints.lapTotalSeconds(lap);
+            totalCalories += trackpoints.lapCalories(lap);
+            maximumSpeed = Math.max(maximumSpeed, trackpoints.lapMaximumSpeed(lap));
+            maximumHeartRate = Math.max(maximumHeartRate, trackpoints.lapMaximumHeartRate(lap));
+            maximumCadence = Math.max(maximumCadence, trackpoints.lapMaximumCadence(lap));
+            maximumPower = Math.max(maximumPower, trackpoints.lapMaximumPower(lap));
+            heartRateSum += lapSamples == 0 ? 0.0 : trackpoints.lapAverageHeartRate(lap) * lapSamples;
+            cadenceSum += lapSamples == 0 ? 0.0 : trackpoints.lapAverageCadence(lap) * lapSamples;
+            powerSum += lapSamples == 0 ? 0.0 : trackpoints.lapAveragePower(lap) * lapSamples;
+        }
+
+        writeEvent(buf, endTime, EVENT_TYPE_STOP_ALL);
+
+        int count = Math.max(samples, 1);
+        double totalMeters = trackpoints.size() > 0
+                ? Miles.of(trackpoints.distance(trackpoints.size() - 1)).toMeters()
+                : 0.0;
+        SESSION.writeDefinition(buf);
+        buf.put(SESSION.dataHeader());
+        putUint16(buf, 0);
+        putUint32(buf, endTime);
+        buf.put((byte) EVENT_SESSION);
+        buf.put((byte) EVENT_TYPE_STOP);
+        putUint32(buf, startTime);
+        buf.put((byte) SPORT_CYCLING);
+        buf.put((byte) SUB_SPORT_INDOOR_CYCLING);
+        putUint32(buf, totalSeconds * 1000);
+        putUint32(buf, totalSeconds * 1000);
+        putUint32(buf, Math.round(totalMeters * 100));
+        putUint16(buf, totalCalories);
+        putUint16(buf, totalSeconds > 0 ? Math.round(totalMeters / totalSeconds * 1000) : 0);
+        putUint16(buf, Math.round(MilesPerHour.of(maximumSpeed).toMetersPerSecond() * 1000));
+        putUint8(buf, (int) (heartRateSum / count));
+        putUint8(buf, maximumHeartRate);
+        putUint8(buf, (int) (cadenceSum / count));
+        putUint8(buf, maximumCadence);
+        putUint16(buf, (long) (powerSum / count));
+        putUint16(buf, (long) maximumPower);
+        putUint16(buf, 0);
+        putUint16(buf, trackpoints.lapCount());
+
+        ACTIVITY.writeDefinition(buf);
+        buf.put(ACTIVITY.dataHeader());
+        putUint32(buf, endTime);
+        putUint32(buf, totalSeconds * 1000);
+        putUint16(buf, 1);
+        buf.put((byte) 0); // manual
+        buf.put((byte) EVENT_ACTIVITY);
+        buf.put((byte) EVENT_TYPE_STOP);
+
+        buf.putShort((short) crc(buf.array(), 0, buf.position()));
+        return Fit.of(buf.array());
+    }
+
+    private static void writeEvent(ByteBuffer buf, long timestamp, int eventType) {
+        buf.put(EVENT.dataHeader());
+        putUint32(buf, timestamp);
+        buf.put((byte) EVENT_TIMER);
+        buf.put((byte) eventType);
+    }
+
+    private static void writeRecord(ByteBuffer buf, TrackpointBuffer tps, int i) {
+        buf.put(RECORD.dataHeader());
+        putUint32(buf, fitTime(tps.timeMillis(i)));
+        putUint8(buf, tps.heartRate(i));
+        putUint8(buf, tps.cadence(i));
+        putUint32(buf, Math.round(Miles.of(tps.distance(i)).toMeters() * 100));
+        putUint16(buf, Math.round(MilesPerHour.of(tps.speed(i)).toMetersPerSecond() * 1000));
+        putUint16(buf, (long) tps.power(i));
+    }
+
+    private static void writeLap(ByteBuffer buf, TrackpointBuffer tps, int lap) {
+        int first = tps.lapFirst(lap);
+        int end = tps.lapEnd(lap);
+        long lapStart = fitTime(tps.lapStartMillis(lap));
+        long lapEnd = end > first ? fitTime(tps.timeMillis(end - 1)) : lapStart;
+        // unlike the TCX lap distance, measure from the end of the previous lap so lap distances
+        // add up to the session distance
+        double startMiles = first > 0 ? tps.distance(first - 1) : 0.0;
+        double lapMeters =
+                end > first ? Miles.of(tps.distance(end - 1) - startMiles).toMeters() : 0.0;
+        long lapSeconds = tps.lapTotalSeconds(lap);
+        boolean empty = end == first;
+
+        buf.put(LAP.dataHeader());
+        putUint16(buf, lap);
+        putUint32(buf, lapEnd);
+        buf.put((byte) EVENT_LAP);
+        buf.put((byte) EVENT_TYPE_STOP);
+        putUint32(buf, lapStart);
+        putUint32(buf, lapSeconds * 1000);
+        putUint32(buf, lapSeconds * 1000);
+        putUint32(buf, Math.round(lapMeters * 100));
+        putUint16(buf, tps.lapCalories(lap));
+        putUint16(buf, lapSeconds > 0 ? Math.round(lapMeters / lapSeconds * 1000) : 0);
+        putUint16(buf, Math.round(MilesPerHour.of(tps.lapMaximumSpeed(lap)).toMetersPerSecond() * 1000));
+        putUint8(buf, empty ? 0 : (int) tps.lapAverageHeartRate(lap));
+        putUint8(buf, tps.lapMaximumHeartRate(lap));
+        putUint8(buf, empty ? 0 : (int) tps.lapAverageCadence(lap));
+        putUint8(buf, tps.lapMaximumCadence(lap));
+        putUint16(buf, empty ? 0 : (long) tps.lapAveragePower(lap));
+        putUint16(buf, (long) tps.lapMaximumPower(lap));
+        buf.put((byte) 0); // intensity: active
+        buf.put((byte) 0); // lap trigger: manual
+        buf.put((byte) SPORT_CYCLING);
+        buf.put((byte) SUB_SPORT_INDOOR_CYCLING);
+    }
+
+    static long fitTime(long epochMillis) {
+        return Math.floorDiv(epochMillis, 1000L) - FIT_EPOCH_OFFSET_SECONDS;
+    }
+
+    // the all-ones value of each unsigned type means "invalid", so clamp one below it
+    private static void putUint8(ByteBuffer buf, int value) {
+        buf.put((byte) Math.max(0, Math.min(value, 0xFE)));
+    }
+
+    private static void putUint16(ByteBuffer buf, long value) {
+        buf.putShort((short) Math.max(0, Math.min(value, 0xFFFE)));
+    }
+
+    private static void putUint32(ByteBuffer buf, long value) {
+        buf.putInt((int) Math.max(0, Math.min(value, 0xFFFFFFFEL)));
+    }
+
+    /** Computes the FIT CRC-16 of {@code bytes[offset, offset + length)}. */
+    static int crc(byte[] bytes, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int b = bytes[i] & 0xFF;
+            int tmp = CRC_TABLE[crc & 0xF];
+            crc = (crc >> 4) & 0x0FFF;
+            crc = crc ^ tmp ^ CRC_TABLE[b & 0xF];
+            tmp = CRC_TABLE[crc & 0xF];
+            crc = (crc >> 4) & 0x0FFF;
+            crc = crc ^ tmp ^ CRC_TABLE[(b >> 4) & 0xF];
+        }
+        return crc;
+    }
+
+    private static Field field(int number, byte baseType) {
+        int size =
+                switch (baseType) {
+                    case ENUM, UINT8 -> 1;
+                    case UINT16 -> 2;
+                    case UINT32 -> 4;
+                    default -> throw new IllegalArgumentException("Unsupported base type " + baseType);
+                };
+        return new Field(number, size, baseType);
+    }
+
+    private record Field(int number, int size, byte baseType) {}
+
+    private record Message(int localType, int globalNumber, List<Field> fields) {
+        int definitionSize() {
+            return 6 + 3 * fields.size();
+        }
+
+        int dataSize() {
+            return 1 + fields.stream().mapToInt(Field::size).sum();
+        }
+
+        byte dataHeader() {
+            return (byte) localType;
+        }
+
+        void writeDefinition(ByteBuffer buf) {
+            buf.put((byte) (0x40 | localType));
+            buf.put((byte) 0); // reserved
+            buf.put((byte) 0); // little-endian
+            buf.putShort((short) globalNumber);
+            buf.put((byte) fields.size());
+            for (Field field : fields) {
+                buf.put((byte) field.number());
+                buf.put((byte) field.size());
+                buf.put(field.baseType());
+            }
+        }
+    }
+}
@@ -17,6 +17,12 @@ public record GarminActivity(
         String startTimeGMT) {
     private static DateTimeFormatter parser = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    /** An activity we created ourselves, as it will be listed once Garmin has processed it. */
+    public static GarminActivity created(GarminActivityId activityId, String activityName, Instant start) {
+        String startTime = parser.format(LocalDateTime.ofInstant(start, ZoneOffset.UTC));
+        return new GarminActivity(activityId, activityName, Optional.empty(), 0L, startTime, startTime);
+    }
+
     public Instant tcxId() {
         return LocalDateTime.parse(startTimeGMT, parser).toInstant(ZoneOffset.UTC);
     }
@@ -0,0 +1,128 @@
+package io.allezgo.adapters.garmin;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.allezgo.client.HttpError;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Recently listed Garmin activities for each account, so that repeat syncs don't page through the
+ * whole activity list again.
+ *
+ * <p>Garmin lists activities newest first, so a cached listing is refreshed by fetching from the
+ * head of the list only until an activity we already know appears, which for a repeat sync is
+ * normally within the first page. Activities we upload are added to the listing directly. A
+ * listing is only extended further back when a sync asks for older activities than it holds, and
+ * listings are discarded after a fixed time, which bounds how long activities deleted in Garmin
+ * Connect, or added behind the head of the list, can go unnoticed.
+ */
+public final class GarminActivityCache {
+    private static final int PAGE_SIZE = 20;
+
+    private final Cache<String, Listing> listings;
+
+    public GarminActivityCache(Duration expiry, long maxAccounts) {
+        this.listings = CacheBuilder.newBuilder()
+                .expireAfterWrite(expiry)
+                .maximumSize(maxAccounts)
+                .build();
+    }
+
+    /** Returns the account's activities that started after {@code since}, newest first. */
+    public List<GarminActivity> since(GarminClient garmin, String account, Instant since) {
+        return since(
+                (start, limit) -> garmin.activities(start, limit).orElseThrow(HttpError::toException), account, since);
+    }
+
+    List<GarminActivity> since(
+            BiFunction<Integer, Integer, List<GarminActivity>> pages, String account, Instant since) {
+        Listing listing = listings.asMap().computeIfAbsent(account, a -> new Listing());
+        synchronized (listing) {
+            listing.refreshHead(pages);
+            listing.extendTo(pages, since);
+            return listing.activities.stream()
+                    .filter(activity -> activity.tcxId().isAfter(since))
+                    .toList();
+        }
+    }
+
+    /** Adds an activity we've just created to the account's listing, if it has one. */
+    public void add(String account, GarminActivity activity) {
+        Listing listing = listings.getIfPresent(account);
+        if (listing != null) {
+            synchronized (listing) {
+                listing.insert(activity);
+            }
+        }
+    }
+
+    /** The first activities of an account's list, newest first, without gaps. */
+    private static final class Listing {
+        private final List<GarminActivity> activities = new ArrayList<>();
+        private final Set<GarminActivityId> ids = new HashSet<>();
+        // every activity that started after this is in the listing
+        private Instant complete = Instant.MAX;
+
+        void refreshHead(BiFunction<Integer, Integer, List<GarminActivity>> pages) {
+            if (activities.isEmpty()) {
+                return;
+            }
+            List<GarminActivity> added = new ArrayList<>();
+            for (int start = 0; ; start += PAGE_SIZE) {
+                List<GarminActivity> page = pages.apply(start, PAGE_SIZE);
+                for (GarminActivity activity : page) {
+                    if (ids.contains(activity.activityId())) {
+                        prepend(added);
+                        return;
+                    }
+                    added.add(activity);
+                }
+                if (page.size() < PAGE_SIZE) {
+                    prepend(added);
+                    return;
+                }
+            }
+        }
+
+        void extendTo(BiFunction<Integer, Integer, List<GarminActivity>> pages, Instant since) {
+            // positions in Garmin's list line up with the listing, as both are newest first without gaps
+            for (int start = activities.size(); complete.isAfter(since); start += PAGE_SIZE) {
+                List<GarminActivity> page = pages.apply(start, PAGE_SIZE);
+                for (GarminActivity activity : page) {
+                    if (ids.add(activity.activityId())) {
+                        activities.add(activity);
+                    }
+                }
+                if (page.size() < PAGE_SIZE) {
+                    complete = Instant.MIN;
+                } else if (!page.get(page.size() - 1).tcxId().isAfter(since)) {
+                    complete = since;
+                }
+            }
+        }
+
+        void insert(GarminActivity activity) {
+            Instant start = activity.tcxId();
+            // an activity older than the listing reaches will be found when it's extended
+            if (!start.isAfter(complete) || !ids.add(activity.activityId())) {
+                return;
+            }
+            int index = 0;
+            while (index < activities.size() && activities.get(index).tcxId().isAfter(start)) {
+                index++;
+            }
+            activities.add(index, activity);
+        }
+
+        private void prepend(List<GarminActivity> added) {
+            added.forEach(activity -> ids.add(activity.activityId()));
+            activities.addAll(0, added);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.allezgo.adapters.garmin;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * Garmin activities indexed by start time, for finding the activity that corresponds to a ride
+ * recorded elsewhere.
+ *
+ * <p>Start times are parsed once, when the index is built, and kept sorted in a primitive array so
+ * that each lookup is a binary search rather than a scan that re-parses every activity's start.
+ */
+public final class GarminActivityIndex {
+    private final long[] startSeconds;
+    private final GarminActivity[] activities;
+
+    private GarminActivityIndex(long[] startSeconds, GarminActivity[] activities) {
+        this.startSeconds = startSeconds;
+        this.activities = activities;
+    }
+
+    public static GarminActivityIndex of(Collection<GarminActivity> activities) {
+        record Started(long startSeconds, GarminActivity activity) {}
+        Started[] sorted = activities.stream()
+                .map(a -> new Started(a.tcxId().getEpochSecond(), a))
+                .sorted(Comparator.comparingLong(Started::startSeconds))
+                .toArray(Started[]::new);
+        return new GarminActivityIndex(
+                Arrays.stream(sorted).mapToLong(Started::startSeconds).toArray(),
+                Arrays.stream(sorted).map(Started::activity).toArray(GarminActivity[]::new));
+    }
+
+    public int size() {
+        return activities.length;
+    }
+
+    /**
+     * Returns the activity that starts nearest to {@code start}, provided it starts strictly within
+     * {@code tolerance} of it.
+     */
+    public Optional<GarminActivity> nearest(Instant start, Duration tolerance) {
+        long target = start.getEpochSecond();
+        long window = tolerance.toSeconds();
+        int index = Arrays.binarySearch(startSeconds, target);
+        if (index >= 0) {
+            return Optional.of(activities[index]);
+        }
+        // the insertion point separates the latest activity before start from the earliest after it
+        int after = -index - 1;
+        int before = after - 1;
+        long afterDistance = after < startSeconds.length ? startSeconds[after] - target : Long.MAX_VALUE;
+        long beforeDistance = before >= 0 ? target - startSeconds[before] : Long.MAX_VALUE;
+        if (Math.min(afterDistance, beforeDistance) >= window) {
+            return Optional.empty();
+        }
+        return Optional.of(activities[afterDistance < beforeDistance ? after : before]);
+    }
+}
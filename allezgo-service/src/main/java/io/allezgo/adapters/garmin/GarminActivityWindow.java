@@ -0,0 +1,63 @@
+package io.allezgo.adapters.garmin;
+
+import com.google.common.base.Preconditions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Finds the activity that corresponds to a ride recorded elsewhere in a newest-first listing of
+ * Garmin activities of any length, in constant memory.
+ *
+ * <p>Rides must be looked up newest first, which makes matching a merge-join of the two listings:
+ * the listing is read only as far as the oldest activity that could match the current ride, and only
+ * the activities within the tolerance of that ride are held, so a history of years costs no more
+ * memory than a day's.
+ */
+public final class GarminActivityWindow {
+    private final Iterator<GarminActivity> listing;
+    private final Duration tolerance;
+    private final Deque<GarminActivity> window = new ArrayDeque<>();
+    private Instant previous = Instant.MAX;
+
+    public GarminActivityWindow(Iterator<GarminActivity> listing, Duration tolerance) {
+        this.listing = listing;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Returns the activity that starts nearest to {@code start}, provided it starts strictly within
+     * {@code tolerance} of it. Each start must be no later than the start of the previous lookup.
+     */
+    public Optional<GarminActivity> nearest(Instant start) {
+        Preconditions.checkArgument(!start.isAfter(previous), "Rides must be matched newest first");
+        previous = start;
+
+        Instant earliest = start.minus(tolerance);
+        Instant latest = start.plus(tolerance);
+        // read until the window ends with an activity too old to match, which later rides may match
+        while (listing.hasNext()
+                && (window.isEmpty() || window.peekLast().tcxId().isAfter(earliest))) {
+            window.addLast(listing.next());
+        }
+        // activities too new to match this ride are too new for any later ride too
+        while (!window.isEmpty() && !window.peekFirst().tcxId().isBefore(latest)) {
+            window.removeFirst();
+        }
+
+        GarminActivity nearest = null;
+        long nearestDistance = tolerance.toSeconds();
+        for (GarminActivity activity : window) {
+            long distance = Math.abs(activity.tcxId().getEpochSecond() - start.getEpochSecond());
+            // on a tie prefer the earlier activity, which is listed later
+            if (distance < nearestDistance || (nearest != null && distance == nearestDistance)) {
+                nearest = activity;
+                nearestDistance = distance;
+            }
+        }
+        return Optional.ofNullable(nearest);
+    }
+}
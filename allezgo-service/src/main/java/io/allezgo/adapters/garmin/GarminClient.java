@@ -5,11 +5,13 @@ import com.google.common.base.Suppliers;
 import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
 import com.markelliot.result.Result;
+import io.allezgo.adapters.fit.Fit;
 import io.allezgo.adapters.tcx.Tcx;
 import io.allezgo.client.Endpoint;
 import io.allezgo.client.Forms;
 import io.allezgo.client.HttpError;
 import io.allezgo.client.ObjectHttpClient;
+import io.allezgo.client.UploadContent;
 import io.allezgo.config.Configuration;
 import java.io.IOException;
 import java.net.CookieManager;
@@ -173,7 +175,65 @@ public final class GarminClient {
     }
 
     public Result<GarminActivityId, HttpError> uploadTcx(Tcx tcx) {
-        Result<GarminUploadResponse, HttpError> maybeResult = rawUploadTcx(tcx);
+        return activityIdOf(rawUploadTcx(tcx));
+    }
+
+    /** Uploads a TCX document that is streamed into the request by {@code tcx}. */
+    public Result<GarminActivityId, HttpError> uploadTcx(UploadContent tcx) {
+        return activityIdOf(rawUploadTcx(tcx));
+    }
+
+    public Result<GarminActivityId, HttpError> uploadFit(Fit fit) {
+        return activityIdOf(rawUploadFit(fit));
+    }
+
+    /**
+     * Uploads an activity file compressed into a zip archive, which Garmin unpacks and imports as it
+     * would the plain file. {@code filename} names the archive entry and its extension tells Garmin
+     * how to read the activity.
+     */
+    public Result<GarminActivityId, HttpError> uploadZipped(String filename, UploadContent activity) {
+        return activityIdOf(rawUploadZipped(filename, activity));
+    }
+
+    /**
+     * Uploads a TCX document like {@link #uploadTcx(UploadContent)}, except that when Garmin rejects
+     * it as a duplicate of an existing activity, the existing activity is returned.
+     */
+    public Result<GarminUpload, HttpError> uploadTcxOrFindDuplicate(UploadContent tcx) {
+        return uploadOf(rawUploadTcx(tcx));
+    }
+
+    public Result<GarminUpload, HttpError> uploadFitOrFindDuplicate(Fit fit) {
+        return uploadOf(rawUploadFit(fit));
+    }
+
+    public Result<GarminUpload, HttpError> uploadZippedOrFindDuplicate(String filename, UploadContent activity) {
+        return uploadOf(rawUploadZipped(filename, activity));
+    }
+
+    static Result<GarminUpload, HttpError> uploadOf(Result<GarminUploadResponse, HttpError> maybeResult) {
+        if (maybeResult.isError()) {
+            // Garmin answers a duplicate with a 409 whose failures name the activity it duplicates
+            HttpError error = maybeResult.error();
+            Optional<GarminActivityId> duplicate = error.status() == 409
+                    ? client.errorBody(error, GarminUploadResponse.class).stream()
+                            .flatMap(response -> Optional.ofNullable(response.detailedImportResult()).stream())
+                            .flatMap(result -> result.failures().stream())
+                            .filter(failure -> failure.messages().stream()
+                                    .anyMatch(m -> m.code() == GarminUploadResponse.DUPLICATE_ACTIVITY))
+                            .flatMap(failure -> failure.activityId().stream())
+                            .findFirst()
+                    : Optional.empty();
+            return duplicate
+                    .map(id -> Result.<GarminUpload, HttpError>ok(new GarminUpload(id, true)))
+                    .orElseGet(maybeResult::coerce);
+        }
+        return activityIdOf(maybeResult).mapResult(id -> new GarminUpload(id, false));
+    }
+
+    private static Result<GarminActivityId, HttpError> activityIdOf(
+            Result<GarminUploadResponse, HttpError> maybeResult) {
         if (maybeResult.isError()) {
             return maybeResult.coerce();
         }
@@ -197,6 +257,39 @@ public final class GarminClient {
                 GarminUploadResponse.class);
     }
 
+    public Result<GarminUploadResponse, HttpError> rawUploadTcx(UploadContent tcx) {
+        return client.upload(
+                base.path("proxy", "upload-service", "upload", ".tcx")
+                        .header("nk", "NT")
+                        .header("cookie", session.get().toCookies())
+                        .build(),
+                "activity.tcx",
+                tcx,
+                GarminUploadResponse.class);
+    }
+
+    public Result<GarminUploadResponse, HttpError> rawUploadFit(Fit fit) {
+        return client.upload(
+                base.path("proxy", "upload-service", "upload", ".fit")
+                        .header("nk", "NT")
+                        .header("cookie", session.get().toCookies())
+                        .build(),
+                "activity.fit",
+                fit.value(),
+                GarminUploadResponse.class);
+    }
+
+    public Result<GarminUploadResponse, HttpError> rawUploadZipped(String filename, UploadContent activity) {
+        return client.upload(
+                base.path("proxy", "upload-service", "upload", ".zip")
+                        .header("nk", "NT")
+                        .header("cookie", session.get().toCookies())
+                        .build(),
+                "activity.zip",
+                activity.zipped(filename),
+                GarminUploadResponse.class);
+    }
+
     public Result<GarminUpdateActivityResponse, HttpError> updateActivity(
             GarminActivityId activityId, String title, String description) {
         Result<GarminUpdateActivityResponse, HttpError> resp =
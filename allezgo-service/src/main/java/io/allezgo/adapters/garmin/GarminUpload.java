@@ -0,0 +1,7 @@
+package io.allezgo.adapters.garmin;
+
+/**
+ * The activity an upload resulted in: either a newly created activity or, when Garmin recognized
+ * the upload as a duplicate, the existing activity it duplicates.
+ */
+public record GarminUpload(GarminActivityId activityId, boolean duplicate) {}
@@ -2,9 +2,27 @@ package io.allezgo.adapters.garmin;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
+import java.util.Optional;
 
 public record GarminUploadResponse(DetailedImportResult detailedImportResult) {
-    public record DetailedImportResult(String uploadId, List<Success> successes) {}
+    /** The failure message code Garmin uses when an upload duplicates an existing activity. */
+    static final int DUPLICATE_ACTIVITY = 202;
+
+    public record DetailedImportResult(String uploadId, List<Success> successes, List<Failure> failures) {
+        @Override
+        public List<Failure> failures() {
+            return failures == null ? List.of() : failures;
+        }
+    }
 
     public record Success(@JsonProperty("internalId") GarminActivityId activityId) {}
+
+    public record Failure(@JsonProperty("internalId") Optional<GarminActivityId> activityId, List<Message> messages) {
+        @Override
+        public List<Message> messages() {
+            return messages == null ? List.of() : messages;
+        }
+    }
+
+    public record Message(int code, String content) {}
 }
@@ -96,9 +96,14 @@ public final class PelotonClient {
     }
 
     public Result<PerformanceSummary, HttpError> metrics(ActivityId activityId) {
+        return metrics(activityId, 1);
+    }
+
+    /** Returns the metrics for a workout with one sample every {@code everyN} seconds. */
+    public Result<PerformanceSummary, HttpError> metrics(ActivityId activityId, int everyN) {
         return client.get(
                 base.path("api", "workout", activityId.value(), "performance_graph")
-                        .query("every_n", 1)
+                        .query("every_n", everyN)
                         .header("cookie", session.get().toCookies())
                         .build(),
                 PerformanceSummary.class);
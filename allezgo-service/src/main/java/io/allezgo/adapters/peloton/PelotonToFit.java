@@ -0,0 +1,17 @@
+package io.allezgo.adapters.peloton;
+
+import io.allezgo.adapters.fit.Fit;
+import io.allezgo.adapters.fit.FitEncoder;
+
+public final class PelotonToFit {
+    private PelotonToFit() {}
+
+    public static Fit convertToFit(PelotonActivity activity, Ride ride, PerformanceSummary metrics) {
+        return convertToFit(activity, ride, metrics, Sampling.FULL);
+    }
+
+    public static Fit convertToFit(PelotonActivity activity, Ride ride, PerformanceSummary metrics, Sampling sampling) {
+        return FitEncoder.encode(
+                PelotonToTcx.start(activity), PelotonToTcx.trackpoints(activity, ride, metrics, sampling));
+    }
+}
@@ -1,18 +1,15 @@
 package io.allezgo.adapters.peloton;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import io.allezgo.adapters.tcx.Tcx;
+import io.allezgo.adapters.tcx.TrackpointBuffer;
 import io.allezgo.adapters.tcx.TrainingCenterDatabase;
-import io.allezgo.units.BeatsPerMinute;
 import io.allezgo.units.Calories;
-import io.allezgo.units.Miles;
-import io.allezgo.units.MilesPerHour;
-import io.allezgo.units.RevolutionsPerMinute;
 import io.allezgo.units.Seconds;
-import io.allezgo.units.Watts;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
@@ -20,15 +17,70 @@ public final class PelotonToTcx {
     private PelotonToTcx() {}
 
     public static Tcx convertToTcx(PelotonActivity activity, Ride ride, PerformanceSummary metrics) {
-        ImmutableMap<String, PerformanceSummary.Metric> metricMap =
-                Maps.uniqueIndex(metrics.metrics(), PerformanceSummary.Metric::name);
-        ImmutableMap<String, PerformanceSummary.Summary> summaryMap =
-                Maps.uniqueIndex(metrics.summaries(), PerformanceSummary.Summary::name);
+        return TrainingCenterDatabase.render(
+                notes(ride), start(activity), trackpoints(activity, ride, metrics, Sampling.FULL));
+    }
 
-        Instant start = Instant.ofEpochSecond(activity.startTime());
+    /**
+     * Streams the TCX for a ride to {@code out} as UTF-8, without materializing the document as a
+     * string.
+     */
+    public static void writeTcx(PelotonActivity activity, Ride ride, PerformanceSummary metrics, OutputStream out)
+            throws IOException {
+        writeTcx(activity, ride, metrics, Sampling.FULL, out);
+    }
+
+    public static void writeTcx(
+            PelotonActivity activity, Ride ride, PerformanceSummary metrics, Sampling sampling, OutputStream out)
+            throws IOException {
+        writeTcx(activity, ride, trackpoints(activity, ride, metrics, sampling), out);
+    }
 
-        List<TrainingCenterDatabase.Lap> laps =
-                new ArrayList<>(metrics.segments().size());
+    /** Streams the TCX for a ride whose {@link #trackpoints} have already been built. */
+    public static void writeTcx(PelotonActivity activity, Ride ride, TrackpointBuffer trackpoints, OutputStream out)
+            throws IOException {
+        TrainingCenterDatabase.write(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8), notes(ride), start(activity), trackpoints);
+    }
+
+    /** Returns the trackpoints for a ride, downsampled if {@code sampling} asks for it. */
+    public static TrackpointBuffer trackpoints(
+            PelotonActivity activity, Ride ride, PerformanceSummary metrics, Sampling sampling) {
+        TrackpointBuffer trackpoints = new TrackpointBuffer(metrics.ticks().length + 1);
+        fill(activity, ride, metrics, trackpoints);
+        if (sampling.maxTrackpoints().isPresent()) {
+            return trackpoints.downsample(sampling.maxTrackpoints().getAsInt());
+        }
+        return trackpoints;
+    }
+
+    public static Instant start(PelotonActivity activity) {
+        return Instant.ofEpochSecond(activity.startTime());
+    }
+
+    public static String notes(Ride ride) {
+        return ride.ride().title()
+                + " with "
+                + ride.ride().instructor().name()
+                + "\n"
+                + ride.ride().description();
+    }
+
+    /**
+     * Appends one lap per segment of the ride to {@code trackpoints}, in a single pass over the
+     * metrics and without allocating per trackpoint.
+     */
+    public static void fill(
+            PelotonActivity activity, Ride ride, PerformanceSummary metrics, TrackpointBuffer trackpoints) {
+        int[] ticks = metrics.ticks();
+        double[] heartRate = metrics.metric("Heart Rate").values();
+        double[] cadence = metrics.metric("Cadence").values();
+        double[] speed = metrics.metric("Speed").values();
+        double[] output = metrics.metric("Output").values();
+        int totalCalories = metrics.summary("Calories").value();
+
+        Instant start = start(activity);
+        long startMillis = start.toEpochMilli();
 
         List<Ride.Segment> segmentsByStartTime = metrics.segments().stream()
                 .sorted(Comparator.comparing(s -> s.startTime().value()))
@@ -36,79 +88,68 @@ public final class PelotonToTcx {
 
         double cumulativeDistance = 0.0;
         for (Ride.Segment segment : segmentsByStartTime) {
-            List<TrainingCenterDatabase.Trackpoint> trackpoints =
-                    new ArrayList<>(metrics.ticks().size());
-
-            // TODO(markelliot): this assumes ticks are seconds, which isn't quite right
-            int startTick = (int) segment.startTime().value();
-            int endTick = Math.min(
-                    startTick + (int) segment.length().value() - 1,
-                    metrics.ticks().size() - 1);
+            // ticks count seconds from 1 and may be more than a second apart when fetched at a
+            // coarser resolution, so a segment's samples are those with a tick in (start, end]
+            long segmentStart = segment.startTime().value();
+            int startTick = firstTickAfter(ticks, segmentStart);
+            int endTick = firstTickAfter(ticks, segmentStart + segment.length().value()) - 1;
 
-            if (startTick >= metrics.ticks().size()) {
+            if (startTick >= ticks.length) {
                 // this means the metrics data ends early
-                // TODO(markelliot): we wouldn't need to check this if we didn't assume ticks were
-                // seconds
                 break;
             }
+            if (endTick < startTick) {
+                // a segment shorter than the sampling interval may have no samples of its own
+                continue;
+            }
+
+            Instant lapStart = start.plusSeconds(segmentStart + 1);
+            Seconds duration = Seconds.of(ticks[endTick] - segmentStart);
+
+            // TODO(markelliot): assume linear calorie assignment, which is pretty bogus -- we
+            // should work out how Peloton converts effort to calories (HR?) and then do that
+            // calculation ourselves
+            Calories caloriePortion = Calories.of((int) (totalCalories
+                    * (double) duration.value()
+                    / (double) ride.ride().duration().value()));
+
+            trackpoints.startLap(lapStart, duration, caloriePortion);
 
             if (startTick == 0) {
                 // fudge a 0th point because Peloton counts from a tick value of 1s but Garmin
                 // won't count moving time until it sees at least the first tick
                 // (we use non-zero HR/Cadence/Speed/Power because picking 0 for these things might
                 //  be a litte weird)
-                trackpoints.add(new TrainingCenterDatabase.Trackpoint(
-                        start.plusSeconds(0),
-                        BeatsPerMinute.of(
-                                metricMap.get("Heart Rate").values().get(0).intValue()),
-                        RevolutionsPerMinute.of(
-                                metricMap.get("Cadence").values().get(0).intValue()),
-                        MilesPerHour.of(metricMap.get("Speed").values().get(0)),
-                        Watts.of(metricMap.get("Output").values().get(0)),
-                        Miles.of(0.0)));
+                trackpoints.add(startMillis, (int) heartRate[0], (int) cadence[0], speed[0], output[0], 0.0);
             }
 
             for (int i = startTick; i <= endTick; i++) {
-                double seconds =
-                        metrics.ticks().get(i) - ((i > 0) ? metrics.ticks().get(i - 1) : 0);
-                cumulativeDistance += metricMap.get("Speed").values().get(i) * seconds / 3600.0;
-
-                trackpoints.add(new TrainingCenterDatabase.Trackpoint(
-                        start.plusSeconds(metrics.ticks().get(i)),
-                        BeatsPerMinute.of(
-                                metricMap.get("Heart Rate").values().get(i).intValue()),
-                        RevolutionsPerMinute.of(
-                                metricMap.get("Cadence").values().get(i).intValue()),
-                        MilesPerHour.of(metricMap.get("Speed").values().get(i)),
-                        Watts.of(metricMap.get("Output").values().get(i)),
-                        Miles.of(cumulativeDistance)));
+                double seconds = ticks[i] - ((i > 0) ? ticks[i - 1] : 0);
+                cumulativeDistance += speed[i] * seconds / 3600.0;
+
+                trackpoints.add(
+                        startMillis + ticks[i] * 1000L,
+                        (int) heartRate[i],
+                        (int) cadence[i],
+                        speed[i],
+                        output[i],
+                        cumulativeDistance);
             }
-
-            Instant lapStart = start.plusSeconds(metrics.ticks().get(startTick));
-            Seconds duration = Seconds.of(
-                    (long) metrics.ticks().get(endTick) - metrics.ticks().get(startTick) + 1);
-
-            // TODO(markelliot): assume linear calorie assignment, which is pretty bogus -- we
-            // should work out how Peloton converts effort to calories (HR?) and then do that
-            // calculation ourselves
-            Calories caloriePortion =
-                    Calories.of((int) (summaryMap.get("Calories").value()
-                            * (double) duration.value()
-                            / (double) ride.ride().duration().value()));
-
-            TrainingCenterDatabase.Lap lap =
-                    new TrainingCenterDatabase.Lap(lapStart, duration, caloriePortion, trackpoints);
-
-            laps.add(lap);
         }
+    }
 
-        return TrainingCenterDatabase.render(
-                ride.ride().title()
-                        + " with "
-                        + ride.ride().instructor().name()
-                        + "\n"
-                        + ride.ride().description(),
-                start,
-                laps);
+    /** Returns the index of the first tick after {@code seconds}, or {@code ticks.length} if none. */
+    private static int firstTickAfter(int[] ticks, long seconds) {
+        int low = 0;
+        int high = ticks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ticks[mid] <= seconds) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 }
@@ -4,23 +4,51 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.allezgo.units.Seconds;
 import java.util.List;
 
+/**
+ * The {@code performance_graph} for a workout.
+ *
+ * <p>Per-second samples are held in primitive arrays, one column per metric, which Jackson fills
+ * directly from the token stream without boxing each sample.
+ */
+@SuppressWarnings("ArrayRecordComponent")
 public record PerformanceSummary(
         @JsonProperty("average_summaries") List<Average> averages,
         Seconds duration,
-        @JsonProperty("seconds_since_pedaling_start") List<Integer> ticks,
+        @JsonProperty("seconds_since_pedaling_start") int[] ticks,
         @JsonProperty("metrics") List<Metric> metrics,
         @JsonProperty("segment_list") List<Ride.Segment> segments,
         @JsonProperty("summaries") List<Summary> summaries) {
 
+    /** Returns the metric with the given display name, e.g. {@code Heart Rate} or {@code Output}. */
+    public Metric metric(String name) {
+        for (Metric metric : metrics) {
+            if (metric.name().equals(name)) {
+                return metric;
+            }
+        }
+        throw new IllegalStateException("Performance summary is missing metric '" + name + "'");
+    }
+
+    /** Returns the summary with the given display name, e.g. {@code Calories}. */
+    public Summary summary(String name) {
+        for (Summary summary : summaries) {
+            if (summary.name().equals(name)) {
+                return summary;
+            }
+        }
+        throw new IllegalStateException("Performance summary is missing summary '" + name + "'");
+    }
+
     public record Average(
             @JsonProperty("display_name") String name, @JsonProperty("display_unit") String unit, int value) {}
 
+    @SuppressWarnings("ArrayRecordComponent")
     public record Metric(
             @JsonProperty("display_name") String name,
             @JsonProperty("display_unit") String unit,
             @JsonProperty("average_value") double average,
             @JsonProperty("max_value") double max,
-            List<Double> values) {}
+            double[] values) {}
 
     public record Summary(
             @JsonProperty("display_name") String name, @JsonProperty("display_unit") String unit, int value) {}
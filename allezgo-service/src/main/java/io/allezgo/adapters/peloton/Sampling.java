@@ -0,0 +1,15 @@
+package io.allezgo.adapters.peloton;
+
+import java.util.OptionalInt;
+
+/**
+ * The resolution at which a workout is fetched from Peloton and converted.
+ *
+ * <p>{@code everyN} asks Peloton for one sample every {@code everyN} seconds, which shrinks the
+ * fetch at the cost of coarser laps and distance. {@code maxTrackpoints} instead fetches every
+ * sample and downsamples the converted workout to at most that many trackpoints, keeping lap totals
+ * and distance exactly as they would be at full resolution.
+ */
+public record Sampling(int everyN, OptionalInt maxTrackpoints) {
+    public static final Sampling FULL = new Sampling(1, OptionalInt.empty());
+}
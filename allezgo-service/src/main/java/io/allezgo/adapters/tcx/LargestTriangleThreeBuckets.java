@@ -0,0 +1,90 @@
+package io.allezgo.adapters.tcx;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013) over several series that share an
+ * x axis.
+ *
+ * <p>The first and last points are always kept. Remaining points are divided into equal buckets and
+ * from each bucket we keep the point forming the largest triangle with the previously kept point and
+ * the average of the next bucket, which keeps peaks and troughs that uniform decimation would drop.
+ * Each series is scaled by its range so that, say, power in watts doesn't drown out cadence.
+ */
+final class LargestTriangleThreeBuckets {
+    private LargestTriangleThreeBuckets() {}
+
+    /**
+     * Returns the ascending indices of at most {@code threshold} points selected from the {@code
+     * count} points starting at {@code from}.
+     */
+    static int[] select(long[] x, double[][] series, int from, int count, int threshold) {
+        if (threshold >= count || count <= 2) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        if (threshold < 2) {
+            threshold = 2;
+        }
+
+        double[] scale = new double[series.length];
+        for (int s = 0; s < series.length; s++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < from + count; i++) {
+                min = Math.min(min, series[s][i]);
+                max = Math.max(max, series[s][i]);
+            }
+            scale[s] = max > min ? 1.0 / (max - min) : 0.0;
+        }
+
+        int end = from + count;
+        int[] selected = new int[threshold];
+        selected[0] = from;
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        double[] average = new double[series.length];
+        int previous = from;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, end);
+            double averageX = 0.0;
+            for (int s = 0; s < series.length; s++) {
+                average[s] = 0.0;
+            }
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i] - x[previous];
+                for (int s = 0; s < series.length; s++) {
+                    average[s] += series[s][i];
+                }
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            for (int s = 0; s < series.length; s++) {
+                average[s] /= nextCount;
+            }
+
+            int bucketStart = from + (int) (bucket * bucketSize) + 1;
+            int bucketEnd = from + (int) ((bucket + 1) * bucketSize) + 1;
+            double largestArea = -1.0;
+            int largest = bucketStart;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                // twice the triangle's area, with x measured relative to the previously kept point
+                double dx = x[i] - x[previous];
+                double area = 0.0;
+                for (int s = 0; s < series.length; s++) {
+                    double origin = series[s][previous];
+                    area += scale[s] * Math.abs(averageX * (series[s][i] - origin) - dx * (average[s] - origin));
+                }
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = i;
+                }
+            }
+            selected[bucket + 1] = largest;
+            previous = largest;
+        }
+        selected[threshold - 1] = end - 1;
+        return selected;
+    }
+}
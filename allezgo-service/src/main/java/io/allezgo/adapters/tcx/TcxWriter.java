@@ -0,0 +1,215 @@
+package io.allezgo.adapters.tcx;
+
+import com.google.common.escape.Escaper;
+import com.google.common.xml.XmlEscapers;
+import io.allezgo.units.Miles;
+import io.allezgo.units.MilesPerHour;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streams a TCX document to a {@link Writer}.
+ *
+ * <p>Elements are appended to a small reusable buffer that is copied to the underlying writer in
+ * fixed-size chunks, so rendering cost grows linearly with the number of trackpoints and the
+ * document never needs to exist as a single {@link String}. Output is laid out exactly as the
+ * original template-based renderer laid it out, including its blank line after each {@code
+ * <Track>} and after the final lap.
+ */
+public final class TcxWriter implements Flushable {
+    private static final int CHUNK_SIZE = 8192;
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final Escaper escaper = XmlEscapers.xmlContentEscaper();
+
+    private final Writer out;
+    private final StringBuilder buffer = new StringBuilder(2 * CHUNK_SIZE);
+    private final char[] chunk = new char[2 * CHUNK_SIZE];
+
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private String cachedDate = "";
+
+    public TcxWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void startDocument(Instant id) throws IOException {
+        buffer.append(
+                """
+                <?xml version='1.0' encoding='UTF-8'?>
+                <TrainingCenterDatabase
+                  xsi:schemaLocation="http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2 http://www.garmin.com/xmlschemas/TrainingCenterDatabasev2.xsd"
+                  xmlns="http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2"
+                  xmlns:ns2="http://www.garmin.com/xmlschemas/UserProfile/v2"
+                  xmlns:ns3="http://www.garmin.com/xmlschemas/ActivityExtension/v2"
+                  xmlns:ns4="http://www.garmin.com/xmlschemas/ProfileExtension/v1"
+                  xmlns:ns5="http://www.garmin.com/xmlschemas/ActivityGoals/v1"
+                  xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance">
+                  <Activities>
+                    <Activity Sport="Biking">
+                      <Id>""");
+        appendInstant(id.toEpochMilli());
+        buffer.append("</Id>\n");
+        maybeFlush();
+    }
+
+    public void endDocument(String notes) throws IOException {
+        buffer.append("\n      <Notes>")
+                .append(escaper.escape(notes))
+                .append("</Notes>\n")
+                .append("    </Activity>\n")
+                .append("  </Activities>\n")
+                .append("</TrainingCenterDatabase>\n");
+        flush();
+    }
+
+    public void writeLaps(TrackpointBuffer trackpoints) throws IOException {
+        for (int lap = 0; lap < trackpoints.lapCount(); lap++) {
+            writeLap(trackpoints, lap);
+        }
+    }
+
+    private void writeLap(TrackpointBuffer tps, int lap) throws IOException {
+        buffer.append("      <Lap StartTime=\"");
+        appendInstant(tps.lapStartMillis(lap));
+        buffer.append("\">\n")
+                .append("        <TotalTimeSeconds>")
+                .append(tps.lapTotalSeconds(lap))
+                .append("</TotalTimeSeconds>\n")
+                .append("        <DistanceMeters>")
+                .append(tps.lapDistanceMeters(lap))
+                .append("</DistanceMeters>\n")
+                .append("        <MaximumSpeed>")
+                .append(tps.lapMaximumSpeed(lap))
+                .append("</MaximumSpeed>\n")
+                .append("        <Calories>")
+                .append(tps.lapCalories(lap))
+                .append("</Calories>\n")
+                .append("        <AverageHeartRateBpm>\n")
+                .append("          <Value>")
+                .append((int) tps.lapAverageHeartRate(lap))
+                .append("</Value>\n")
+                .append("        </AverageHeartRateBpm>\n")
+                .append("        <MaximumHeartRateBpm>\n")
+                .append("          <Value>")
+                .append(tps.lapMaximumHeartRate(lap))
+                .append("</Value>\n")
+                .append("        </MaximumHeartRateBpm>\n")
+                .append("        <Intensity>Active</Intensity>\n")
+                .append("        <Cadence>")
+                .append(tps.lapAverageCadence(lap))
+                .append("</Cadence>\n")
+                .append("        <TriggerMethod>Manual</TriggerMethod>\n")
+                .append("        <Track>\n");
+
+        for (int i = tps.lapFirst(lap); i < tps.lapEnd(lap); i++) {
+            writeTrackpoint(tps, i);
+        }
+
+        buffer.append("      \n")
+                .append("        </Track>\n")
+                .append("        <Extensions>\n")
+                .append("          <ns3:LX>\n")
+                .append("            <ns3:AvgSpeed>")
+                .append(tps.lapDistanceMeters(lap) / tps.lapTotalSeconds(lap))
+                .append("</ns3:AvgSpeed>\n")
+                .append("            <ns3:MaxBikeCadence>")
+                .append(tps.lapMaximumCadence(lap))
+                .append("</ns3:MaxBikeCadence>\n")
+                .append("            <ns3:AvgWatts>")
+                .append(tps.lapAveragePower(lap))
+                .append("</ns3:AvgWatts>\n")
+                .append("            <ns3:MaxWatts>")
+                .append(tps.lapMaximumPower(lap))
+                .append("</ns3:MaxWatts>\n")
+                .append("          </ns3:LX>\n")
+                .append("        </Extensions>\n")
+                .append("      </Lap>\n");
+        maybeFlush();
+    }
+
+    private void writeTrackpoint(TrackpointBuffer tps, int i) throws IOException {
+        buffer.append("          <Trackpoint>\n").append("            <Time>");
+        appendInstant(tps.timeMillis(i));
+        buffer.append("</Time>\n")
+                .append("            <DistanceMeters>")
+                .append(Miles.of(tps.distance(i)).toMeters())
+                .append("</DistanceMeters>\n")
+                .append("            <HeartRateBpm>\n")
+                .append("              <Value>")
+                .append(tps.heartRate(i))
+                .append("</Value>\n")
+                .append("            </HeartRateBpm>\n")
+                .append("            <Cadence>")
+                .append(tps.cadence(i))
+                .append("</Cadence>\n")
+                .append("            <Extensions>\n")
+                .append("              <ns3:TPX>\n")
+                .append("                <ns3:Speed>")
+                .append(MilesPerHour.of(tps.speed(i)).toMetersPerSecond())
+                .append("</ns3:Speed>\n")
+                .append("                <ns3:Watts>")
+                .append((int) tps.power(i))
+                .append("</ns3:Watts>\n")
+                .append("              </ns3:TPX>\n")
+                .append("            </Extensions>\n")
+                .append("          </Trackpoint>\n");
+        maybeFlush();
+    }
+
+    /**
+     * Appends {@code epochMillis} as {@code yyyy-MM-dd'T'HH:mm:ss.SSSXXX} in UTC. The date portion only
+     * changes once a day so we format it once and reuse it for every subsequent trackpoint.
+     */
+    private void appendInstant(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        long epochDay = Math.floorDiv(epochSecond, 86400L);
+        if (epochDay != cachedEpochDay) {
+            cachedEpochDay = epochDay;
+            cachedDate = dateFormatter.format(LocalDate.ofEpochDay(epochDay));
+        }
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+        buffer.append(cachedDate).append('T');
+        appendPadded(secondOfDay / 3600, 2);
+        buffer.append(':');
+        appendPadded((secondOfDay / 60) % 60, 2);
+        buffer.append(':');
+        appendPadded(secondOfDay % 60, 2);
+        buffer.append('.');
+        appendPadded((int) Math.floorMod(epochMillis, 1000L), 3);
+        buffer.append('Z');
+    }
+
+    private void appendPadded(int value, int width) {
+        for (int limit = width == 3 ? 100 : 10; limit > 1 && value < limit; limit /= 10) {
+            buffer.append('0');
+        }
+        buffer.append(value);
+    }
+
+    private void maybeFlush() throws IOException {
+        if (buffer.length() >= CHUNK_SIZE) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        int offset = 0;
+        while (offset < buffer.length()) {
+            int length = Math.min(chunk.length, buffer.length() - offset);
+            buffer.getChars(offset, offset + length, chunk, 0);
+            out.write(chunk, 0, length);
+            offset += length;
+        }
+        buffer.setLength(0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
@@ -0,0 +1,361 @@
+package io.allezgo.adapters.tcx;
+
+import com.google.common.base.Preconditions;
+import io.allezgo.units.BeatsPerMinute;
+import io.allezgo.units.Calories;
+import io.allezgo.units.Miles;
+import io.allezgo.units.MilesPerHour;
+import io.allezgo.units.RevolutionsPerMinute;
+import io.allezgo.units.Seconds;
+import io.allezgo.units.Watts;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable, column-oriented buffer of laps and trackpoints.
+ *
+ * <p>Each trackpoint field lives in its own primitive array and lap statistics (maximums and sums)
+ * are accumulated as trackpoints are added, so filling and rendering an activity allocates nothing
+ * per trackpoint and never needs a second pass to summarize a lap. Units follow the rest of the
+ * codebase: speed is in miles per hour, distance is cumulative miles and power is in watts.
+ *
+ * <p>Buffers may be {@link #clear() cleared} and refilled to reuse their arrays, and may be {@link
+ * #downsample(int) downsampled} to fewer trackpoints without changing any lap statistics.
+ */
+public final class TrackpointBuffer {
+    private int size;
+    private long[] timeMillis;
+    private int[] heartRate;
+    private int[] cadence;
+    private double[] speed;
+    private double[] power;
+    private double[] distance;
+
+    private int lapCount;
+    private int[] lapFirst = new int[8];
+    private long[] lapStartMillis = new long[8];
+    private long[] lapTotalSeconds = new long[8];
+    private int[] lapCalories = new int[8];
+    private double[] lapMaximumSpeed = new double[8];
+    private int[] lapMaximumHeartRate = new int[8];
+    private double[] lapMaximumPower = new double[8];
+    private int[] lapMaximumCadence = new int[8];
+    private double[] lapCadenceSum = new double[8];
+    private double[] lapHeartRateSum = new double[8];
+    private double[] lapPowerSum = new double[8];
+    private int[] lapSamples = new int[8];
+    private double[] lapStartDistance = new double[8];
+    private double[] lapEndDistance = new double[8];
+
+    public TrackpointBuffer(int expectedTrackpoints) {
+        int capacity = Math.max(expectedTrackpoints, 16);
+        this.timeMillis = new long[capacity];
+        this.heartRate = new int[capacity];
+        this.cadence = new int[capacity];
+        this.speed = new double[capacity];
+        this.power = new double[capacity];
+        this.distance = new double[capacity];
+    }
+
+    /** Returns a buffer holding the provided laps. */
+    public static TrackpointBuffer of(List<TrainingCenterDatabase.Lap> laps) {
+        TrackpointBuffer buffer = new TrackpointBuffer(
+                laps.stream().mapToInt(lap -> lap.trackpoints().size()).sum());
+        for (TrainingCenterDatabase.Lap lap : laps) {
+            buffer.startLap(lap.startTime(), lap.totalSeconds(), lap.calories());
+            for (TrainingCenterDatabase.Trackpoint tp : lap.trackpoints()) {
+                buffer.add(
+                        tp.time().toEpochMilli(),
+                        tp.heartRate().value(),
+                        tp.cadence().value(),
+                        tp.speed().value(),
+                        tp.power().value(),
+                        tp.distance().value());
+            }
+        }
+        return buffer;
+    }
+
+    public void clear() {
+        size = 0;
+        lapCount = 0;
+    }
+
+    /** Starts a new lap; subsequently added trackpoints belong to this lap. */
+    public void startLap(Instant startTime, Seconds totalSeconds, Calories calories) {
+        if (lapCount == lapFirst.length) {
+            growLaps();
+        }
+        lapFirst[lapCount] = size;
+        lapStartMillis[lapCount] = startTime.toEpochMilli();
+        lapTotalSeconds[lapCount] = totalSeconds.value();
+        lapCalories[lapCount] = calories.value();
+        lapMaximumSpeed[lapCount] = 0.0;
+        lapMaximumHeartRate[lapCount] = 0;
+        lapMaximumPower[lapCount] = 0.0;
+        lapMaximumCadence[lapCount] = 0;
+        lapCadenceSum[lapCount] = 0.0;
+        lapHeartRateSum[lapCount] = 0.0;
+        lapPowerSum[lapCount] = 0.0;
+        lapSamples[lapCount] = 0;
+        lapStartDistance[lapCount] = 0.0;
+        lapEndDistance[lapCount] = 0.0;
+        lapCount++;
+    }
+
+    /** Appends a trackpoint to the current lap and folds it into that lap's statistics. */
+    public void add(
+            long epochMillis, int heartRateBpm, int cadenceRpm, double speedMph, double watts, double distanceMiles) {
+        Preconditions.checkState(lapCount > 0, "A lap must be started before adding trackpoints");
+        if (size == timeMillis.length) {
+            growTrackpoints();
+        }
+        timeMillis[size] = epochMillis;
+        heartRate[size] = heartRateBpm;
+        cadence[size] = cadenceRpm;
+        speed[size] = speedMph;
+        power[size] = watts;
+        distance[size] = distanceMiles;
+        size++;
+
+        int lap = lapCount - 1;
+        if (speedMph > lapMaximumSpeed[lap]) {
+            lapMaximumSpeed[lap] = speedMph;
+        }
+        if (heartRateBpm > lapMaximumHeartRate[lap]) {
+            lapMaximumHeartRate[lap] = heartRateBpm;
+        }
+        if (watts > lapMaximumPower[lap]) {
+            lapMaximumPower[lap] = watts;
+        }
+        if (cadenceRpm > lapMaximumCadence[lap]) {
+            lapMaximumCadence[lap] = cadenceRpm;
+        }
+        // TODO(markelliot): assuming equal spaced ticks
+        lapCadenceSum[lap] += cadenceRpm;
+        lapHeartRateSum[lap] += heartRateBpm;
+        lapPowerSum[lap] += watts;
+        lapSamples[lap]++;
+        if (lapSamples[lap] == 2) {
+            lapStartDistance[lap] = distanceMiles;
+        }
+        lapEndDistance[lap] = distanceMiles;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timeMillis(int index) {
+        return timeMillis[index];
+    }
+
+    public int heartRate(int index) {
+        return heartRate[index];
+    }
+
+    public int cadence(int index) {
+        return cadence[index];
+    }
+
+    public double speed(int index) {
+        return speed[index];
+    }
+
+    public double power(int index) {
+        return power[index];
+    }
+
+    public double distance(int index) {
+        return distance[index];
+    }
+
+    public int lapCount() {
+        return lapCount;
+    }
+
+    /** Index of the first trackpoint of {@code lap}. */
+    public int lapFirst(int lap) {
+        return lapFirst[lap];
+    }
+
+    /** Index one past the last trackpoint of {@code lap}. */
+    public int lapEnd(int lap) {
+        return lap + 1 < lapCount ? lapFirst[lap + 1] : size;
+    }
+
+    public int lapSize(int lap) {
+        return lapEnd(lap) - lapFirst(lap);
+    }
+
+    /**
+     * Number of trackpoints folded into the statistics of {@code lap}, which is larger than {@link
+     * #lapSize(int)} once a buffer has been downsampled.
+     */
+    public int lapSamples(int lap) {
+        return lapSamples[lap];
+    }
+
+    public long lapStartMillis(int lap) {
+        return lapStartMillis[lap];
+    }
+
+    public long lapTotalSeconds(int lap) {
+        return lapTotalSeconds[lap];
+    }
+
+    public int lapCalories(int lap) {
+        return lapCalories[lap];
+    }
+
+    public double lapMaximumSpeed(int lap) {
+        return lapMaximumSpeed[lap];
+    }
+
+    public int lapMaximumHeartRate(int lap) {
+        return lapMaximumHeartRate[lap];
+    }
+
+    public double lapMaximumPower(int lap) {
+        return lapMaximumPower[lap];
+    }
+
+    public int lapMaximumCadence(int lap) {
+        return lapMaximumCadence[lap];
+    }
+
+    public double lapAverageCadence(int lap) {
+        return lapCadenceSum[lap] / lapSamples[lap];
+    }
+
+    public double lapAverageHeartRate(int lap) {
+        return lapHeartRateSum[lap] / lapSamples[lap];
+    }
+
+    public double lapAveragePower(int lap) {
+        return lapPowerSum[lap] / lapSamples[lap];
+    }
+
+    /**
+     * Distance covered in {@code lap} in meters, measured from the lap's second trackpoint as our
+     * TCX output always has been.
+     */
+    public double lapDistanceMeters(int lap) {
+        if (lapSamples[lap] < 2) {
+            return 0.0;
+        }
+        return Miles.of(lapEndDistance[lap]).toMeters()
+                - Miles.of(lapStartDistance[lap]).toMeters();
+    }
+
+    /**
+     * Returns a buffer with at most {@code maxTrackpoints} of this buffer's trackpoints (and never
+     * fewer than the first and last of each lap), chosen to preserve the shape of the power, heart
+     * rate, cadence and speed series. Laps keep every statistic this buffer computed from all of its
+     * trackpoints, and kept trackpoints keep their cumulative distance, so totals are exact.
+     */
+    public TrackpointBuffer downsample(int maxTrackpoints) {
+        if (size <= maxTrackpoints) {
+            return this;
+        }
+        double[][] channels = {power, heartRateColumn(), cadenceColumn(), speed};
+        TrackpointBuffer result = new TrackpointBuffer(maxTrackpoints + 2 * lapCount);
+        for (int lap = 0; lap < lapCount; lap++) {
+            int first = lapFirst(lap);
+            int lapSize = lapSize(lap);
+            int target = (int) Math.max(2, (long) maxTrackpoints * lapSize / size);
+
+            result.startLap(
+                    Instant.ofEpochMilli(lapStartMillis[lap]),
+                    Seconds.of(lapTotalSeconds[lap]),
+                    Calories.of(lapCalories[lap]));
+            for (int i : LargestTriangleThreeBuckets.select(timeMillis, channels, first, lapSize, target)) {
+                result.add(timeMillis[i], heartRate[i], cadence[i], speed[i], power[i], distance[i]);
+            }
+            result.copyLapStatistics(lap, this);
+        }
+        return result;
+    }
+
+    /** Returns a record-based copy of this buffer's contents, mainly useful for tests. */
+    public List<TrainingCenterDatabase.Lap> laps() {
+        List<TrainingCenterDatabase.Lap> laps = new ArrayList<>(lapCount);
+        for (int lap = 0; lap < lapCount; lap++) {
+            List<TrainingCenterDatabase.Trackpoint> trackpoints = new ArrayList<>(lapSize(lap));
+            for (int i = lapFirst(lap); i < lapEnd(lap); i++) {
+                trackpoints.add(new TrainingCenterDatabase.Trackpoint(
+                        Instant.ofEpochMilli(timeMillis[i]),
+                        BeatsPerMinute.of(heartRate[i]),
+                        RevolutionsPerMinute.of(cadence[i]),
+                        MilesPerHour.of(speed[i]),
+                        Watts.of(power[i]),
+                        Miles.of(distance[i])));
+            }
+            laps.add(new TrainingCenterDatabase.Lap(
+                    Instant.ofEpochMilli(lapStartMillis[lap]),
+                    Seconds.of(lapTotalSeconds[lap]),
+                    Calories.of(lapCalories[lap]),
+                    trackpoints));
+        }
+        return laps;
+    }
+
+    private double[] heartRateColumn() {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = heartRate[i];
+        }
+        return values;
+    }
+
+    private double[] cadenceColumn() {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = cadence[i];
+        }
+        return values;
+    }
+
+    private void copyLapStatistics(int lap, TrackpointBuffer from) {
+        lapMaximumSpeed[lap] = from.lapMaximumSpeed[lap];
+        lapMaximumHeartRate[lap] = from.lapMaximumHeartRate[lap];
+        lapMaximumPower[lap] = from.lapMaximumPower[lap];
+        lapMaximumCadence[lap] = from.lapMaximumCadence[lap];
+        lapCadenceSum[lap] = from.lapCadenceSum[lap];
+        lapHeartRateSum[lap] = from.lapHeartRateSum[lap];
+        lapPowerSum[lap] = from.lapPowerSum[lap];
+        lapSamples[lap] = from.lapSamples[lap];
+        lapStartDistance[lap] = from.lapStartDistance[lap];
+        lapEndDistance[lap] = from.lapEndDistance[lap];
+    }
+
+    private void growTrackpoints() {
+        int capacity = timeMillis.length * 2;
+        timeMillis = Arrays.copyOf(timeMillis, capacity);
+        heartRate = Arrays.copyOf(heartRate, capacity);
+        cadence = Arrays.copyOf(cadence, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        power = Arrays.copyOf(power, capacity);
+        distance = Arrays.copyOf(distance, capacity);
+    }
+
+    private void growLaps() {
+        int capacity = lapFirst.length * 2;
+        lapFirst = Arrays.copyOf(lapFirst, capacity);
+        lapStartMillis = Arrays.copyOf(lapStartMillis, capacity);
+        lapTotalSeconds = Arrays.copyOf(lapTotalSeconds, capacity);
+        lapCalories = Arrays.copyOf(lapCalories, capacity);
+        lapMaximumSpeed = Arrays.copyOf(lapMaximumSpeed, capacity);
+        lapMaximumHeartRate = Arrays.copyOf(lapMaximumHeartRate, capacity);
+        lapMaximumPower = Arrays.copyOf(lapMaximumPower, capacity);
+        lapMaximumCadence = Arrays.copyOf(lapMaximumCadence, capacity);
+        lapCadenceSum = Arrays.copyOf(lapCadenceSum, capacity);
+        lapHeartRateSum = Arrays.copyOf(lapHeartRateSum, capacity);
+        lapPowerSum = Arrays.copyOf(lapPowerSum, capacity);
+        lapSamples = Arrays.copyOf(lapSamples, capacity);
+        lapStartDistance = Arrays.copyOf(lapStartDistance, capacity);
+        lapEndDistance = Arrays.copyOf(lapEndDistance, capacity);
+    }
+}
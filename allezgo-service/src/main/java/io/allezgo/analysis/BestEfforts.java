@@ -0,0 +1,27 @@
+package io.allezgo.analysis;
+
+import io.allezgo.units.Seconds;
+import io.allezgo.units.Watts;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** The best average power a workout held for each of a few standard durations. */
+public record BestEfforts(List<Effort> efforts) {
+    public record Effort(Seconds duration, Watts power) {}
+
+    /** Formats these efforts for an activity description, e.g. {@code Best efforts: 5s 412W, 1m 320W}. */
+    public String describe() {
+        return efforts.stream()
+                .map(effort -> label(effort.duration()) + " "
+                        + Math.round(effort.power().value()) + "W")
+                .collect(Collectors.joining(", ", "Best efforts: ", ""));
+    }
+
+    private static String label(Seconds duration) {
+        long seconds = duration.value();
+        if (seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+}
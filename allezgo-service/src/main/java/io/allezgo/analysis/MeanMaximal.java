@@ -0,0 +1,130 @@
+package io.allezgo.analysis;
+
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.units.Seconds;
+import io.allezgo.units.Watts;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes mean-maximal power curves and best efforts from Peloton {@code Output} samples.
+ *
+ * <p>Rather than averaging every window of every length, which is quadratic in the length of the
+ * workout, we evaluate a fixed grid of durations: every second up to 10 seconds, then durations
+ * growing by 10% at a time, plus the standard {@link #BEST_EFFORTS}. Each duration is a single
+ * sliding-window pass over prefix sums, so a curve costs O(n log n) for n samples.
+ */
+public final class MeanMaximal {
+    /** The durations, in seconds, that best efforts are reported for: 5s, 1m, 5m, 20m and 60m. */
+    public static final int[] BEST_EFFORTS = {5, 60, 300, 1200, 3600};
+
+    /** Ascending durations, in seconds, that every curve is evaluated at; long enough for a day. */
+    static final int[] DURATIONS = durations(24 * 60 * 60);
+
+    private MeanMaximal() {}
+
+    public static PowerCurve powerCurve(PerformanceSummary metrics) {
+        return powerCurve(metrics.ticks(), metrics.metric("Output").values());
+    }
+
+    /**
+     * Returns the power curve of {@code watts} sampled at {@code ticks}, which count seconds from the
+     * start of the workout. Each sample is taken to hold since the previous tick, so the curve is
+     * correct for samples fetched at a resolution coarser than one second.
+     */
+    public static PowerCurve powerCurve(int[] ticks, double[] watts) {
+        int n = Math.min(ticks.length, watts.length);
+        if (n == 0) {
+            return PowerCurve.EMPTY;
+        }
+
+        // time[i] and energy[i] are the elapsed seconds and joules before sample i
+        long[] time = new long[n + 1];
+        double[] energy = new double[n + 1];
+        long firstInterval = n > 1 ? Math.max(1, ticks[1] - ticks[0]) : 1;
+        time[0] = ticks[0] - firstInterval;
+        for (int i = 0; i < n; i++) {
+            time[i + 1] = Math.max(ticks[i], time[i] + 1);
+            energy[i + 1] = energy[i] + watts[i] * (time[i + 1] - time[i]);
+        }
+
+        long total = time[n] - time[0];
+        int points = 0;
+        while (points < DURATIONS.length && DURATIONS[points] <= total) {
+            points++;
+        }
+
+        double[] curve = new double[points];
+        for (int d = 0; d < points; d++) {
+            int duration = DURATIONS[d];
+            double best = 0.0;
+            int start = 0;
+            for (int end = 1; end <= n; end++) {
+                // use the shortest window ending at this sample that lasts at least duration
+                while (time[end] - time[start + 1] >= duration) {
+                    start++;
+                }
+                long elapsed = time[end] - time[start];
+                if (elapsed >= duration) {
+                    best = Math.max(best, (energy[end] - energy[start]) / elapsed);
+                }
+            }
+            curve[d] = best;
+        }
+        return new PowerCurve(curve);
+    }
+
+    /**
+     * Returns the best power curve across all {@code workouts}, computing the curve of each workout
+     * in parallel on {@code pool} and merging them pairwise with {@link PowerCurve#max(PowerCurve)}.
+     * The pool is the caller's so that aggregating a long history doesn't occupy the common pool.
+     */
+    public static PowerCurve powerCurve(List<PerformanceSummary> workouts, ForkJoinPool pool) {
+        return pool.invoke(new PowerCurveTask(workouts));
+    }
+
+    /** The best curve of a range of workouts, found by splitting the range in halves. */
+    private static final class PowerCurveTask extends RecursiveTask<PowerCurve> {
+        private final List<PerformanceSummary> workouts;
+
+        PowerCurveTask(List<PerformanceSummary> workouts) {
+            this.workouts = workouts;
+        }
+
+        @Override
+        protected PowerCurve compute() {
+            if (workouts.size() <= 1) {
+                return workouts.isEmpty() ? PowerCurve.EMPTY : powerCurve(workouts.get(0));
+            }
+            int middle = workouts.size() / 2;
+            PowerCurveTask newer = new PowerCurveTask(workouts.subList(0, middle));
+            newer.fork();
+            PowerCurve older = new PowerCurveTask(workouts.subList(middle, workouts.size())).compute();
+            return newer.join().max(older);
+        }
+    }
+
+    /** Returns the best efforts on {@code curve} for each of {@link #BEST_EFFORTS} that it reaches. */
+    public static BestEfforts bestEfforts(PowerCurve curve) {
+        List<BestEfforts.Effort> efforts = new ArrayList<>(BEST_EFFORTS.length);
+        for (int seconds : BEST_EFFORTS) {
+            Seconds duration = Seconds.of(seconds);
+            curve.best(duration).ifPresent(watts -> efforts.add(new BestEfforts.Effort(duration, Watts.of(watts))));
+        }
+        return new BestEfforts(efforts);
+    }
+
+    private static int[] durations(int limit) {
+        TreeSet<Integer> durations = new TreeSet<>();
+        for (int duration = 1; duration <= limit; duration = Math.max(duration + 1, (int) Math.ceil(duration * 1.1))) {
+            durations.add(duration);
+        }
+        for (int duration : BEST_EFFORTS) {
+            durations.add(duration);
+        }
+        return durations.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
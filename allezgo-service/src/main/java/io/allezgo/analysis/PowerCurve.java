@@ -0,0 +1,56 @@
+package io.allezgo.analysis;
+
+import io.allezgo.units.Seconds;
+import java.util.Arrays;
+import java.util.OptionalDouble;
+
+/**
+ * A mean-maximal power curve: for each duration, the highest average power held for that long.
+ *
+ * <p>Durations come from a fixed grid shared by every curve (see {@link MeanMaximal#DURATIONS}),
+ * truncated at the length of the workout, so curves of different workouts line up point for point
+ * and can be combined with {@link #max(PowerCurve)}.
+ */
+public final class PowerCurve {
+    public static final PowerCurve EMPTY = new PowerCurve(new double[0]);
+
+    private final double[] watts;
+
+    PowerCurve(double[] watts) {
+        this.watts = watts;
+    }
+
+    public int size() {
+        return watts.length;
+    }
+
+    /** The duration in seconds of the {@code index}th point. */
+    public int duration(int index) {
+        return MeanMaximal.DURATIONS[index];
+    }
+
+    /** The best average power for the {@code index}th point's duration. */
+    public double watts(int index) {
+        return watts[index];
+    }
+
+    /** Returns the best average power held for exactly {@code duration}, if the curve reaches it. */
+    public OptionalDouble best(Seconds duration) {
+        if (duration.value() > Integer.MAX_VALUE) {
+            return OptionalDouble.empty();
+        }
+        int index = Arrays.binarySearch(MeanMaximal.DURATIONS, 0, watts.length, (int) duration.value());
+        return index >= 0 ? OptionalDouble.of(watts[index]) : OptionalDouble.empty();
+    }
+
+    /** Returns the pointwise best of this and {@code other}, which is as long as the longer curve. */
+    public PowerCurve max(PowerCurve other) {
+        double[] longer = watts.length >= other.watts.length ? watts : other.watts;
+        double[] shorter = longer == watts ? other.watts : watts;
+        double[] result = Arrays.copyOf(longer, longer.length);
+        for (int i = 0; i < shorter.length; i++) {
+            result[i] = Math.max(result[i], shorter[i]);
+        }
+        return new PowerCurve(result);
+    }
+}
@@ -0,0 +1,67 @@
+package io.allezgo.client;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory output stream that keeps its content as a list of fixed-size chunks instead of one
+ * contiguous array that is repeatedly grown and copied, and that publishes those chunks as a request
+ * body without joining them.
+ */
+final class ChunkedOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private byte[] current = new byte[CHUNK_SIZE];
+    private int position = 0;
+    private long size = 0;
+
+    @Override
+    public void write(int b) {
+        if (position == current.length) {
+            nextChunk();
+        }
+        current[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (position == current.length) {
+                nextChunk();
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(bytes, offset, current, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+            size += count;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    HttpRequest.BodyPublisher toBodyPublisher() {
+        if (size == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        List<byte[]> all = new ArrayList<>(chunks.size() + 1);
+        all.addAll(chunks);
+        if (position > 0) {
+            all.add(position == current.length ? current : Arrays.copyOf(current, position));
+        }
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(all), size);
+    }
+
+    private void nextChunk() {
+        chunks.add(current);
+        current = new byte[CHUNK_SIZE];
+        position = 0;
+    }
+}
@@ -14,23 +14,51 @@ public final class Forms {
 
     public record MultipartUpload(String boundary, String content) {
         public static MultipartUpload of(String filename, String fileContent) {
-            String boundary = "----" + Math.abs(ThreadLocalRandom.current().nextLong() / 2);
-            return format(filename, fileContent, boundary);
+            return format(filename, fileContent, newBoundary());
         }
 
         @VisibleForTesting
         static MultipartUpload format(String filename, String fileContent, String boundary) {
-            String marker = "--" + boundary + "\r\n";
-            String header = marker
-                    + ("Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n")
-                    + "Content-Type: application/octet-stream\r\n"
-                    + "\r\n";
-            String terminator = "\r\n--" + boundary + "--";
-            String content = header + fileContent + terminator;
+            String content = preamble(filename, boundary) + fileContent + terminator(boundary);
             return new MultipartUpload(boundary, content);
         }
     }
 
+    /**
+     * Returns a multipart body containing a single binary file; the file's bytes are published as-is
+     * rather than being copied into a combined body.
+     */
+    public static HttpRequest.BodyPublisher multipartBodyPublisher(String boundary, String filename, byte[] file) {
+        return multipartBodyPublisher(boundary, filename, HttpRequest.BodyPublishers.ofByteArray(file));
+    }
+
+    /**
+     * Returns a multipart body containing a single file that publishes the preamble, the file and the
+     * terminator one after another.
+     */
+    public static HttpRequest.BodyPublisher multipartBodyPublisher(
+            String boundary, String filename, HttpRequest.BodyPublisher file) {
+        return HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofString(preamble(filename, boundary)),
+                file,
+                HttpRequest.BodyPublishers.ofString(terminator(boundary)));
+    }
+
+    public static String newBoundary() {
+        return "----" + Math.abs(ThreadLocalRandom.current().nextLong() / 2);
+    }
+
+    private static String preamble(String filename, String boundary) {
+        return "--" + boundary + "\r\n"
+                + ("Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n")
+                + "Content-Type: application/octet-stream\r\n"
+                + "\r\n";
+    }
+
+    private static String terminator(String boundary) {
+        return "\r\n--" + boundary + "--";
+    }
+
     public static HttpRequest.BodyPublisher bodyPublisher(Map<String, String> params) {
         return HttpRequest.BodyPublishers.ofString(encode(params));
     }
@@ -25,7 +25,15 @@ public record HttpError(int status, String body, Optional<String> comment) {
         return Result.error(new HttpError(500, "<>", Optional.of(comment + ": " + sw)));
     }
 
-    public IllegalStateException toException() {
-        return new IllegalStateException(comment.orElse("Error") + ": " + status + ": " + body);
+    /**
+     * Whether the same request may yet succeed: the service asked us to slow down, failed, or
+     * couldn't be reached, which is also reported as a 500.
+     */
+    public boolean isTransient() {
+        return status == 429 || status >= 500;
+    }
+
+    public HttpErrorException toException() {
+        return new HttpErrorException(this);
     }
 }
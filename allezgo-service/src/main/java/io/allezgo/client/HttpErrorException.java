@@ -0,0 +1,15 @@
+package io.allezgo.client;
+
+/** An {@link HttpError} thrown by code that can't return it as a result. */
+public final class HttpErrorException extends IllegalStateException {
+    private final transient HttpError error;
+
+    HttpErrorException(HttpError error) {
+        super(error.comment().orElse("Error") + ": " + error.status() + ": " + error.body());
+        this.error = error;
+    }
+
+    public HttpError error() {
+        return error;
+    }
+}
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Optional;
 
 public final class ObjectHttpClient {
     private static final ObjectMapper mapper = new ObjectMapper()
@@ -39,12 +40,44 @@ public final class ObjectHttpClient {
     public <Response> Result<Response, HttpError> upload(
             Endpoint endpoint, String filename, String fileContent, Class<Response> responseClass) {
         Forms.MultipartUpload upload = Forms.MultipartUpload.of(filename, fileContent);
+        return upload(
+                endpoint, upload.boundary(), HttpRequest.BodyPublishers.ofString(upload.content()), responseClass);
+    }
+
+    public <Response> Result<Response, HttpError> upload(
+            Endpoint endpoint, String filename, byte[] fileContent, Class<Response> responseClass) {
+        String boundary = Forms.newBoundary();
+        return upload(endpoint, boundary, Forms.multipartBodyPublisher(boundary, filename, fileContent), responseClass);
+    }
+
+    /**
+     * Uploads a file whose content is written by {@code content} into a chunked in-memory buffer,
+     * which is then published between the multipart preamble and terminator without ever being
+     * joined into a single array or string.
+     */
+    public <Response> Result<Response, HttpError> upload(
+            Endpoint endpoint, String filename, UploadContent content, Class<Response> responseClass) {
+        ChunkedOutputStream body = new ChunkedOutputStream();
+        try {
+            content.writeTo(body);
+        } catch (IOException e) {
+            return HttpError.of("Unable to write upload content", e);
+        }
+        String boundary = Forms.newBoundary();
+        return upload(
+                endpoint,
+                boundary,
+                Forms.multipartBodyPublisher(boundary, filename, body.toBodyPublisher()),
+                responseClass);
+    }
 
+    private <Response> Result<Response, HttpError> upload(
+            Endpoint endpoint, String boundary, HttpRequest.BodyPublisher body, Class<Response> responseClass) {
         HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                 .uri(endpoint.uri())
-                .setHeader(HttpHeaders.CONTENT_TYPE, "multipart/form-data; boundary=" + upload.boundary())
+                .setHeader(HttpHeaders.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary)
                 .setHeader(HttpHeaders.ACCEPT, "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(upload.content()));
+                .POST(body);
         endpoint.headers().forEach(requestBuilder::setHeader);
 
         return send(requestBuilder.build()).flatMapResult(httpResp -> convertResponse(httpResp, responseClass));
@@ -70,6 +103,15 @@ public final class ObjectHttpClient {
         }
     }
 
+    /** Reads the body of an error response, for services that describe their errors in JSON. */
+    public <Response> Optional<Response> errorBody(HttpError error, Class<Response> responseClass) {
+        try {
+            return Optional.of(mapper.readValue(error.body(), responseClass));
+        } catch (JsonProcessingException jpe) {
+            return Optional.empty();
+        }
+    }
+
     private Result<HttpResponse<String>, HttpError> send(HttpRequest httpRequest) {
         try {
             return Result.ok(httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString()));
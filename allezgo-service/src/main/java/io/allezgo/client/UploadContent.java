@@ -0,0 +1,28 @@
+package io.allezgo.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the content of a file upload directly to the stream that backs the request body. */
+@FunctionalInterface
+public interface UploadContent {
+    /** Writes this content to {@code out}, which implementations must not close. */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Returns this content deflated into a zip archive holding a single entry named {@code
+     * entryName}. The archive is written as this content is produced, so the uncompressed content is
+     * never buffered.
+     */
+    default UploadContent zipped(String entryName) {
+        return out -> {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.putNextEntry(new ZipEntry(entryName));
+            writeTo(zip);
+            zip.closeEntry();
+            zip.finish();
+        };
+    }
+}
@@ -2,6 +2,7 @@ package io.allezgo.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
@@ -11,6 +12,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public record Configuration(Peloton peloton, Garmin garmin) {
     private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory()
@@ -35,6 +37,15 @@ public record Configuration(Peloton peloton, Garmin garmin) {
         }
     }
 
+    /** Reads a YAML list of configurations, one per pair of Peloton and Garmin accounts. */
+    public static List<Configuration> listFromFile(File file) {
+        try {
+            return yamlMapper.readValue(file, new TypeReference<List<Configuration>>() {});
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read configuration file " + file, e);
+        }
+    }
+
     public static boolean defaultFileExists() {
         return DEFAULT_FILE.exists();
     }
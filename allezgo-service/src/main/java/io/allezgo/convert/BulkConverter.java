@@ -0,0 +1,161 @@
+package io.allezgo.convert;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PelotonToFit;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts a directory of saved Peloton workouts to TCX or FIT files without contacting Peloton or
+ * Garmin.
+ *
+ * <p>Each workout is a subdirectory holding the three documents the Peloton API returns for it:
+ * {@code workout.json} (the {@link PelotonActivity}), {@code ride.json} (the {@link Ride}) and
+ * {@code performance_graph.json} (the {@link PerformanceSummary}). Inputs are memory-mapped and
+ * parsed straight from the page cache, and workouts are converted in parallel on a fork-join pool so
+ * that a few large rides don't hold up the rest. A workout that fails to convert is logged and
+ * counted, and doesn't stop the others.
+ */
+public final class BulkConverter {
+    private static final Logger log = LoggerFactory.getLogger(BulkConverter.class);
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    public enum Format {
+        TCX("tcx"),
+        FIT("fit");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public static Format parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public record Report(int converted, int failed, long inputBytes, long outputBytes, Duration elapsed) {
+        public double workoutsPerSecond() {
+            return converted / seconds();
+        }
+
+        public double inputMegabytesPerSecond() {
+            return inputBytes / 1_000_000.0 / seconds();
+        }
+
+        public String describe() {
+            return String.format(
+                    Locale.ROOT,
+                    "Converted %d workouts (%d failed) in %.2fs: %.1f workouts/s, %.1f MB/s read, %.1f MB written",
+                    converted,
+                    failed,
+                    seconds(),
+                    workoutsPerSecond(),
+                    inputMegabytesPerSecond(),
+                    outputBytes / 1_000_000.0);
+        }
+
+        private double seconds() {
+            return Math.max(elapsed.toNanos(), 1) / 1e9;
+        }
+    }
+
+    private record Outcome(boolean converted, long inputBytes, long outputBytes) {}
+
+    private final Format format;
+    private final int parallelism;
+
+    public BulkConverter(Format format, int parallelism) {
+        this.format = format;
+        this.parallelism = parallelism;
+    }
+
+    public Report convert(Path input, Path output) throws IOException {
+        List<Path> workouts;
+        try (Stream<Path> children = Files.list(input)) {
+            workouts = children.filter(Files::isDirectory).sorted().toList();
+        }
+        Files.createDirectories(output);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // a parallel stream started from within a pool runs on that pool rather than the common one
+            List<Outcome> outcomes = pool.submit(() -> workouts.parallelStream()
+                            .map(workout -> convertOne(workout, output))
+                            .toList())
+                    .join();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            int converted = (int) outcomes.stream().filter(Outcome::converted).count();
+            return new Report(
+                    converted,
+                    outcomes.size() - converted,
+                    outcomes.stream().mapToLong(Outcome::inputBytes).sum(),
+                    outcomes.stream().mapToLong(Outcome::outputBytes).sum(),
+                    elapsed);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Outcome convertOne(Path workout, Path output) {
+        try {
+            Path activityFile = workout.resolve("workout.json");
+            Path rideFile = workout.resolve("ride.json");
+            Path metricsFile = workout.resolve("performance_graph.json");
+            PelotonActivity activity = read(activityFile, PelotonActivity.class);
+            Ride ride = read(rideFile, Ride.class);
+            PerformanceSummary metrics = read(metricsFile, PerformanceSummary.class);
+            long inputBytes = Files.size(activityFile) + Files.size(rideFile) + Files.size(metricsFile);
+
+            Path file = output.resolve(activity.id().value() + "." + format.extension);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                switch (format) {
+                    case TCX -> PelotonToTcx.writeTcx(activity, ride, metrics, out);
+                    case FIT -> out.write(
+                            PelotonToFit.convertToFit(activity, ride, metrics).value());
+                }
+            }
+            return new Outcome(true, inputBytes, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to convert workout in {}", workout, e);
+            return new Outcome(false, 0, 0);
+        }
+    }
+
+    private static <T> T read(Path file, Class<T> type) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try (InputStream in = new ByteBufferBackedInputStream(buffer)) {
+                return mapper.readValue(in, type);
+            }
+        }
+    }
+}
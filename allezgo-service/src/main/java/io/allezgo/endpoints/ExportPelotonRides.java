@@ -0,0 +1,108 @@
+package io.allezgo.endpoints;
+
+import com.google.common.base.Strings;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PelotonClient;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.Sampling;
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import io.allezgo.config.Configuration;
+import io.allezgo.server.StreamingResponse;
+import io.allezgo.store.StoredWorkout;
+import io.allezgo.store.WorkoutStore;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a zip archive of TCX files for the Peloton rides in a date range.
+ *
+ * <p>Rides are fetched, converted and written to the archive one at a time, and each entry is
+ * flushed to the client as soon as it's complete, so memory use doesn't depend on the length of the
+ * range and the download starts while later rides are still being fetched. Rides that can't be
+ * fetched or converted are listed in an {@code errors.txt} entry at the end of the archive.
+ */
+public final class ExportPelotonRides {
+    private static final Logger log = LoggerFactory.getLogger(ExportPelotonRides.class);
+
+    private final WorkoutSource workouts;
+
+    public ExportPelotonRides() {
+        this(Optional.empty());
+    }
+
+    public ExportPelotonRides(Optional<WorkoutStore> store) {
+        this.workouts = new WorkoutSource(store);
+    }
+
+    public StreamingResponse call(Request request) {
+        if (Strings.isNullOrEmpty(request.pelotonEmail) || Strings.isNullOrEmpty(request.pelotonPassword)) {
+            return StreamingResponse.error(400, "pelotonEmail and pelotonPassword are required");
+        }
+        if (request.startDate == null || request.endDate == null || request.startDate.isAfter(request.endDate)) {
+            return StreamingResponse.error(400, "startDate and endDate are required and must be in order");
+        }
+
+        PelotonClient peloton =
+                new PelotonClient(new Configuration.Peloton(request.pelotonEmail, request.pelotonPassword));
+        if (!peloton.validateLogin()) {
+            return StreamingResponse.error(401, "Unable to login to Peloton with the provided credentials");
+        }
+
+        return StreamingResponse.ok("application/zip", out -> export(peloton, request.startDate, request.endDate, out));
+    }
+
+    public record Request(String pelotonEmail, String pelotonPassword, LocalDate startDate, LocalDate endDate) {}
+
+    private void export(PelotonClient peloton, LocalDate startDate, LocalDate endDate, OutputStream out)
+            throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        List<String> failures = new ArrayList<>();
+
+        // activities are listed newest first, so stop paging once past the start of the range
+        Iterator<PelotonActivity> rides = peloton.activitiesAsStream()
+                .takeWhile(pa -> !SyncPelotonToGarmin.getActivityDate(pa).isBefore(startDate))
+                .filter(pa -> !SyncPelotonToGarmin.getActivityDate(pa).isAfter(endDate))
+                .filter(pa -> pa.fitnessDiscipline().equals(PelotonActivity.FITNESS_DISCIPLINE_CYCLING))
+                .filter(pa -> pa.ride().isPresent())
+                .iterator();
+        while (rides.hasNext()) {
+            PelotonActivity activity = rides.next();
+            StoredWorkout workout;
+            TrackpointBuffer trackpoints;
+            // convert before starting the entry, so a failed conversion leaves no partial entry
+            try {
+                workout = workouts.workout(peloton, activity, Sampling.FULL);
+                trackpoints =
+                        PelotonToTcx.trackpoints(workout.activity(), workout.ride(), workout.metrics(), Sampling.FULL);
+            } catch (RuntimeException e) {
+                log.warn("Unable to export Peloton workout {}", activity.id(), e);
+                failures.add(activity.id() + ": " + e.getMessage());
+                continue;
+            }
+
+            ZipEntry entry = new ZipEntry(SyncPelotonToGarmin.getActivityDate(activity) + "-" + activity.id() + ".tcx");
+            entry.setTime(PelotonToTcx.start(activity).toEpochMilli());
+            zip.putNextEntry(entry);
+            PelotonToTcx.writeTcx(workout.activity(), workout.ride(), trackpoints, zip);
+            zip.closeEntry();
+            zip.flush();
+        }
+
+        if (!failures.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("errors.txt"));
+            zip.write(String.join("\n", failures).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+}
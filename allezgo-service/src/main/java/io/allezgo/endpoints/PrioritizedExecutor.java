@@ -0,0 +1,56 @@
+package io.allezgo.endpoints;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed pool of threads that runs queued interactive tasks ahead of queued background tasks, and
+ * tasks of the same priority in the order they were submitted.
+ */
+final class PrioritizedExecutor {
+    enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong submitted = new AtomicLong();
+
+    PrioritizedExecutor(String name, int threads) {
+        this.pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat(name + "-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /** Returns an executor that submits tasks to this pool at {@code priority}. */
+    Executor at(Priority priority) {
+        return work -> pool.execute(new Task(priority, submitted.getAndIncrement(), work));
+    }
+
+    private record Task(Priority priority, long sequence, Runnable work) implements Runnable, Comparable<Task> {
+        private static final Comparator<Task> ORDER =
+                Comparator.comparing(Task::priority).thenComparingLong(Task::sequence);
+
+        @Override
+        public void run() {
+            work.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
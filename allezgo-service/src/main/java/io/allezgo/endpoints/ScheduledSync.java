@@ -0,0 +1,127 @@
+package io.allezgo.endpoints;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.allezgo.config.Configuration;
+import io.allezgo.endpoints.PrioritizedExecutor.Priority;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Synchronizes registered accounts in the background, so that most rides are already in Garmin
+ * Connect by the time their riders look.
+ *
+ * <p>Each account is synchronized once a period, in its own slot, with the slots spread evenly
+ * across the period so that the load on Peloton and Garmin is flat rather than arriving in bursts.
+ * Syncs run one at a time, and their requests to Peloton and Garmin wait behind those of any
+ * interactive syncs. An account whose sync fails, most often because its credentials have changed,
+ * is skipped for a number of periods that roughly doubles with each consecutive failure, up to a
+ * day's worth.
+ */
+public final class ScheduledSync implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ScheduledSync.class);
+    private static final Duration PERIOD = Duration.ofHours(1);
+    private static final int DAYS_TO_SYNC = 2;
+    private static final int MAX_PERIODS_SKIPPED = 24;
+
+    private final Function<Request, Response> sync;
+    private final List<Configuration> accounts;
+    private final ScheduledExecutorService scheduler;
+    private final Duration period;
+
+    public ScheduledSync(SyncPelotonToGarmin sync, List<Configuration> accounts) {
+        this(
+                request -> sync.sync(request, SyncProgress.NONE, Priority.BACKGROUND),
+                accounts,
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("scheduled-sync-%d")
+                        .setDaemon(true)
+                        .build()),
+                PERIOD);
+    }
+
+    ScheduledSync(
+            Function<Request, Response> sync,
+            List<Configuration> accounts,
+            ScheduledExecutorService scheduler,
+            Duration period) {
+        this.sync = sync;
+        this.accounts = List.copyOf(accounts);
+        this.scheduler = scheduler;
+        this.period = period;
+    }
+
+    public void start() {
+        long periodNanos = period.toNanos();
+        for (int i = 0; i < accounts.size(); i++) {
+            Slot slot = new Slot(accounts.get(i));
+            scheduler.scheduleAtFixedRate(
+                    slot::run, periodNanos / accounts.size() * i, periodNanos, TimeUnit.NANOSECONDS);
+        }
+        log.info("Scheduled background syncs for {} accounts every {}", accounts.size(), period);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private final class Slot {
+        private final Configuration account;
+        private int failures;
+        private int periodsToSkip;
+
+        Slot(Configuration account) {
+            this.account = account;
+        }
+
+        void run() {
+            if (periodsToSkip > 0) {
+                periodsToSkip--;
+                return;
+            }
+            Request request = new Request(
+                    account.peloton().email(),
+                    account.peloton().password(),
+                    account.garmin().email(),
+                    account.garmin().password(),
+                    account.garmin().pelotonGear(),
+                    DAYS_TO_SYNC,
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty());
+            Optional<String> invalid = SyncPelotonToGarmin.validate(request);
+            Response response;
+            try {
+                response = invalid.map(error -> new Response(null, error)).orElseGet(() -> sync.apply(request));
+            } catch (RuntimeException e) {
+                // an exception escaping would cancel every later run of this slot
+                log.error("Error during scheduled sync", e);
+                response = new Response(null, "Error during sync");
+            }
+
+            if (response.result() != null) {
+                failures = 0;
+            } else {
+                failures++;
+                periodsToSkip = Math.min((1 << Math.min(failures, 5)) - 1, MAX_PERIODS_SKIPPED);
+                log.warn(
+                        "Scheduled sync failed {} times in a row, skipping {} periods: {}",
+                        failures,
+                        periodsToSkip,
+                        response.error());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.allezgo.endpoints;
+
+import com.google.common.base.Throwables;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into a single call whose result they all share, and
+ * keeps results that are worth repeating for a short time afterwards, so that a call retried just
+ * after it finished gets the same result rather than doing the work again.
+ */
+final class SingleFlight<V> {
+    private final Clock clock;
+    private final Duration ttl;
+    private final Predicate<V> keep;
+    private final Map<String, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /** Creates a single flight that keeps the results that satisfy {@code keep} for {@code ttl}. */
+    SingleFlight(Clock clock, Duration ttl, Predicate<V> keep) {
+        this.clock = clock;
+        this.ttl = ttl;
+        this.keep = keep;
+    }
+
+    /**
+     * Returns the result of {@code work}, or of the call with the same key that is in flight or that
+     * finished within the ttl.
+     */
+    V call(String key, Supplier<V> work) {
+        evictExpired();
+        Flight<V> flight = new Flight<>();
+        Flight<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+
+        // whatever happens, the flight must be completed, or callers waiting on it would wait forever
+        try {
+            V value = work.get();
+            if (keep.test(value)) {
+                flight.finishedAt = clock.instant();
+            } else {
+                flights.remove(key, flight);
+            }
+            flight.result.complete(value);
+            return value;
+        } catch (Throwable t) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private void evictExpired() {
+        Instant cutoff = clock.instant().minus(ttl);
+        flights.values().removeIf(flight -> flight.finishedBefore(cutoff));
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile Instant finishedAt;
+
+        boolean finishedBefore(Instant cutoff) {
+            Instant finished = finishedAt;
+            return finished != null && finished.isBefore(cutoff);
+        }
+    }
+}
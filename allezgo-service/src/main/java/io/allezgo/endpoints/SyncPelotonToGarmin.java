@@ -1,31 +1,71 @@
 package io.allezgo.endpoints;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Ascii;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.RateLimiter;
 import com.markelliot.barista.annotations.Http;
 import com.markelliot.barista.tracing.Span;
 import com.markelliot.barista.tracing.Spans;
+import com.markelliot.result.Result;
+import io.allezgo.adapters.fit.Fit;
 import io.allezgo.adapters.garmin.GarminActivity;
+import io.allezgo.adapters.garmin.GarminActivityCache;
 import io.allezgo.adapters.garmin.GarminActivityId;
+import io.allezgo.adapters.garmin.GarminActivityIndex;
+import io.allezgo.adapters.garmin.GarminActivityWindow;
 import io.allezgo.adapters.garmin.GarminClient;
+import io.allezgo.adapters.garmin.GarminUpload;
+import io.allezgo.adapters.peloton.ActivityId;
 import io.allezgo.adapters.peloton.PelotonActivity;
 import io.allezgo.adapters.peloton.PelotonClient;
+import io.allezgo.adapters.peloton.PelotonToFit;
 import io.allezgo.adapters.peloton.PelotonToTcx;
-import io.allezgo.adapters.peloton.PerformanceSummary;
 import io.allezgo.adapters.peloton.Ride;
 import io.allezgo.adapters.peloton.RidePointer;
-import io.allezgo.adapters.tcx.Tcx;
+import io.allezgo.adapters.peloton.Sampling;
+import io.allezgo.analysis.BestEfforts;
+import io.allezgo.analysis.MeanMaximal;
 import io.allezgo.client.HttpError;
+import io.allezgo.client.HttpErrorException;
+import io.allezgo.client.UploadContent;
 import io.allezgo.config.Configuration;
+import io.allezgo.endpoints.PrioritizedExecutor.Priority;
 import io.allezgo.events.Events;
 import io.allezgo.events.PelotonToGarminSyncEvent;
+import io.allezgo.store.StoredWorkout;
+import io.allezgo.store.SyncLedger;
+import io.allezgo.store.WorkoutStore;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,35 +73,127 @@ import org.slf4j.LoggerFactory;
 public final class SyncPelotonToGarmin {
 
     private static final Logger log = LoggerFactory.getLogger(SyncPelotonToGarmin.class);
+    private static final int MIN_TRACKPOINTS = 10;
+    private static final Duration MATCH_TOLERANCE = Duration.ofMinutes(2);
+    // requests in flight to each service across all syncs, which keeps us well inside their rate limits
+    private static final int PELOTON_CONCURRENCY = 4;
+    private static final int GARMIN_CONCURRENCY = 2;
+    private static final Duration GARMIN_LISTING_EXPIRY = Duration.ofMinutes(30);
+    private static final int MAX_GARMIN_LISTINGS = 10_000;
+    // backfills upload at most this many rides a second across all accounts, and keep at most this
+    // many rides in flight each, so that years of rides neither crowd out other syncs nor fill memory
+    private static final double BACKFILL_UPLOADS_PER_SECOND = 0.5;
+    private static final int BACKFILL_RIDES_IN_FLIGHT = 8;
+    // attempts at each request for a ride, with a backoff that doubles from the first
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+    private static final int MAX_FAILURE_LENGTH = 200;
+    // long enough to absorb double clicks and client retries, short enough that new rides show up
+    private static final Duration RESULT_TTL = Duration.ofMinutes(2);
 
-    public SyncPelotonToGarmin() {}
+    private final WorkoutSource workouts;
+    private final Optional<SyncLedger> ledger;
+    private final GarminActivityCache garminActivities =
+            new GarminActivityCache(GARMIN_LISTING_EXPIRY, MAX_GARMIN_LISTINGS);
+    private final PrioritizedExecutor pelotonExecutor = new PrioritizedExecutor("sync-peloton", PELOTON_CONCURRENCY);
+    private final PrioritizedExecutor garminExecutor = new PrioritizedExecutor("sync-garmin", GARMIN_CONCURRENCY);
+    private final RateLimiter backfillUploads = RateLimiter.create(BACKFILL_UPLOADS_PER_SECOND);
+    private final SingleFlight<Response> syncs =
+            new SingleFlight<>(Clock.systemUTC(), RESULT_TTL, SyncPelotonToGarmin::isComplete);
+
+    public SyncPelotonToGarmin() {
+        this(Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Creates an endpoint that keeps fetched workouts in, and reads them back from, {@code store},
+     * and that remembers synchronized rides in {@code ledger} so later syncs can skip them.
+     */
+    public SyncPelotonToGarmin(Optional<WorkoutStore> store, Optional<SyncLedger> ledger) {
+        this.workouts = new WorkoutSource(store);
+        this.ledger = ledger;
+    }
 
     @Http.Put("/api/synchronize/peloton-to-garmin")
     public Response call(Request request) {
-        List<String> failingArgs = checkArgs(request);
+        Optional<String> invalid = validate(request);
+        if (invalid.isPresent()) {
+            return new Response(null, invalid.get());
+        }
+        // repeats of a request join the sync already running for it, or reuse its recent result
+        return syncs.call(flightKey(request), () -> sync(request, SyncProgress.NONE));
+    }
+
+    /** Whether a response synchronized every ride, and so is worth returning again to a retry. */
+    private static boolean isComplete(Response response) {
+        return response.result() != null
+                && response.result().stream().noneMatch(record -> record.outcome() == Outcome.FAILED);
+    }
+
+    /**
+     * Identifies identical requests by a hash of all their fields, credentials included, so that only
+     * a caller holding the same credentials can share a sync's result.
+     */
+    private static String flightKey(Request request) {
+        return Hashing.sha256()
+                .hashString(
+                        String.join(
+                                "\n",
+                                request.pelotonEmail.toLowerCase(Locale.ROOT),
+                                request.pelotonPassword,
+                                request.garminEmail.toLowerCase(Locale.ROOT),
+                                request.garminPassword,
+                                request.garminPelotonGearName,
+                                Integer.toString(request.numDaysToSync),
+                                request.uploadFormat.toString(),
+                                request.compressUpload.toString(),
+                                request.metricsEveryN.toString(),
+                                request.maxTrackpoints.toString(),
+                                request.uploadFirst.toString()),
+                        StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    /** Returns a description of the problem with a request, if any, without contacting any service. */
+    static Optional<String> validate(Request request) {
+        List<String> failingArgs = checkArgs(
+                request.pelotonEmail,
+                request.pelotonPassword,
+                request.garminEmail,
+                request.garminPassword,
+                request.garminPelotonGearName);
         if (!failingArgs.isEmpty()) {
-            return new Response(null, "Some required fields were missing or empty: " + failingArgs);
+            return Optional.of("Some required fields were missing or empty: " + failingArgs);
         }
         if (request.numDaysToSync < 0 || request.numDaysToSync > 30) {
-            return new Response(null, "numDaysToSync must be between 1 and 30");
+            return Optional.of("numDaysToSync must be between 1 and 30");
+        }
+        if (request.metricsEveryN.orElse(1) < 1 || request.metricsEveryN.orElse(1) > 60) {
+            return Optional.of("metricsEveryN must be between 1 and 60");
         }
+        if (request.maxTrackpoints.orElse(MIN_TRACKPOINTS) < MIN_TRACKPOINTS) {
+            return Optional.of("maxTrackpoints must be at least " + MIN_TRACKPOINTS);
+        }
+        return Optional.empty();
+    }
 
+    /** Synchronizes a {@link #validate valid} request, reporting each ride to {@code progress}. */
+    Response sync(Request request, SyncProgress progress) {
+        return sync(request, progress, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Synchronizes a {@link #validate valid} request, whose requests to Peloton and Garmin wait behind
+     * those of any syncs with a higher {@code priority}.
+     */
+    Response sync(Request request, SyncProgress progress, Priority priority) {
         PelotonClient peloton =
                 new PelotonClient(new Configuration.Peloton(request.pelotonEmail, request.pelotonPassword));
-
-        try (Span ignored = Spans.forCurrentTrace("validatePelotonLogin")) {
-            if (!peloton.validateLogin()) {
-                return new Response(null, "Unable to login to Peloton with the provided credentials");
-            }
-        }
-
         GarminClient garmin = new GarminClient(
                 new Configuration.Garmin(request.garminEmail, request.garminPassword, request.garminPelotonGearName));
-
-        try (Span ignored = Spans.forCurrentTrace("validateGarminLogin")) {
-            if (!garmin.validateLogin()) {
-                return new Response(null, "Unable to login to Garmin with the provided credentials");
-            }
+        Optional<String> loginError = loginError(peloton, garmin);
+        if (loginError.isPresent()) {
+            return new Response(null, loginError.get());
         }
 
         try (Span ignored = Spans.forCurrentTrace("sendHoneycombEvent")) {
@@ -71,115 +203,624 @@ public final class SyncPelotonToGarmin {
 
         List<SyncRecord> lastNDays = null;
         try {
-            lastNDays = syncLastNDays(peloton, garmin, request.numDaysToSync);
+            lastNDays = syncLastNDays(
+                    peloton,
+                    garmin,
+                    request.numDaysToSync,
+                    request.garminEmail.toLowerCase(Locale.ROOT),
+                    ledger.map(l -> l.account(request.pelotonEmail, request.garminEmail)),
+                    progress,
+                    new UploadOptions(
+                            request.uploadFormat.orElse(UploadFormat.TCX),
+                            request.compressUpload.orElse(false),
+                            new Sampling(
+                                    request.metricsEveryN.orElse(1),
+                                    request.maxTrackpoints.map(OptionalInt::of).orElseGet(OptionalInt::empty)),
+                            request.uploadFirst.orElse(false),
+                            priority));
         } catch (RuntimeException e) {
             log.error("Error during sync", e);
         }
         return new Response(lastNDays, null);
     }
 
-    private static List<String> checkArgs(Request request) {
+    /** Returns a description of the problem with a backfill, if any, without contacting any service. */
+    static Optional<String> validate(BackfillRequest request) {
+        List<String> failingArgs = checkArgs(
+                request.pelotonEmail,
+                request.pelotonPassword,
+                request.garminEmail,
+                request.garminPassword,
+                request.garminPelotonGearName);
+        if (!failingArgs.isEmpty()) {
+            return Optional.of("Some required fields were missing or empty: " + failingArgs);
+        }
+        return Optional.empty();
+    }
+
+    private static List<String> checkArgs(
+            String pelotonEmail,
+            String pelotonPassword,
+            String garminEmail,
+            String garminPassword,
+            String garminPelotonGearName) {
         List<String> nulls = new ArrayList<>();
-        if (Strings.isNullOrEmpty(request.pelotonEmail)) {
+        if (Strings.isNullOrEmpty(pelotonEmail)) {
             nulls.add("pelotonEmail");
         }
-        if (Strings.isNullOrEmpty(request.pelotonPassword)) {
+        if (Strings.isNullOrEmpty(pelotonPassword)) {
             nulls.add("pelotonPassword");
         }
-        if (Strings.isNullOrEmpty(request.garminEmail)) {
+        if (Strings.isNullOrEmpty(garminEmail)) {
             nulls.add("garminEmail");
         }
-        if (Strings.isNullOrEmpty(request.garminPassword)) {
+        if (Strings.isNullOrEmpty(garminPassword)) {
             nulls.add("garminPassword");
         }
-        if (Strings.isNullOrEmpty(request.garminPelotonGearName)) {
+        if (Strings.isNullOrEmpty(garminPelotonGearName)) {
             nulls.add("garminPelotonGearName");
         }
         return nulls;
     }
 
+    /**
+     * Synchronizes every ride back to {@code since}, or the rider's whole history, at background
+     * priority. Rides are reported to {@code progress} and not kept, so the response's result is
+     * always empty; a backfill of years of rides needs no more memory than one of a day.
+     *
+     * <p>Peloton's and Garmin's listings are merge-joined newest first, each read a page at a time.
+     * With a ledger, the backfill checkpoints its progress as rides complete, and a backfill that
+     * stopped part way, whether after an error or a restart, resumes from its checkpoint. A ride that
+     * fails is reported and doesn't stop the backfill, but holds the checkpoint back so that the next
+     * backfill retries it.
+     */
+    Response backfill(BackfillRequest request, SyncProgress progress) {
+        PelotonClient peloton =
+                new PelotonClient(new Configuration.Peloton(request.pelotonEmail, request.pelotonPassword));
+        GarminClient garmin = new GarminClient(
+                new Configuration.Garmin(request.garminEmail, request.garminPassword, request.garminPelotonGearName));
+        Optional<String> loginError = loginError(peloton, garmin);
+        if (loginError.isPresent()) {
+            return new Response(null, loginError.get());
+        }
+
+        String garminAccount = request.garminEmail.toLowerCase(Locale.ROOT);
+        Optional<SyncLedger.Account> account = ledger.map(l -> l.account(request.pelotonEmail, request.garminEmail));
+        UploadOptions options = new UploadOptions(
+                request.uploadFormat.orElse(UploadFormat.TCX),
+                request.compressUpload.orElse(false),
+                Sampling.FULL,
+                false,
+                Priority.BACKGROUND);
+        Instant since = request.since
+                .map(date -> date.atStartOfDay(ZoneOffset.UTC).toInstant())
+                .orElse(Instant.EPOCH);
+        Optional<Instant> resumeFrom = account.flatMap(SyncLedger.Account::backfillCheckpoint);
+
+        AtomicBoolean abandoned = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean anyRideFailed = new AtomicBoolean();
+        Semaphore slots = new Semaphore(BACKFILL_RIDES_IN_FLIGHT);
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint();
+        try {
+            GarminActivityWindow garminWindow = new GarminActivityWindow(
+                    garmin.activitiesAsStream()
+                            .dropWhile(activity -> resumeFrom
+                                    .filter(resume -> activity.tcxId().isAfter(resume.plus(MATCH_TOLERANCE)))
+                                    .isPresent())
+                            .iterator(),
+                    MATCH_TOLERANCE);
+            Iterator<PelotonActivity> rides = peloton.activitiesAsStream()
+                    .dropWhile(activity -> resumeFrom
+                            .filter(resume -> activity.tcxId().isAfter(resume))
+                            .isPresent())
+                    .takeWhile(activity -> !activity.tcxId().isBefore(since))
+                    .filter(activity -> activity.fitnessDiscipline().equals(PelotonActivity.FITNESS_DISCIPLINE_CYCLING))
+                    .filter(activity -> activity.ride().isPresent())
+                    .iterator();
+
+            while (!abandoned.get() && rides.hasNext()) {
+                PelotonActivity ride = rides.next();
+                progress.scanned();
+                Optional<SyncLedger.Entry> entry = account.flatMap(a -> a.get(ride.id()));
+                if (entry.isPresent()) {
+                    progress.synced(recordOf(entry.get()));
+                    continue;
+                }
+                // the window must see rides newest first, so matching happens here rather than in flight
+                Optional<GarminActivity> match = garminWindow.nearest(ride.tcxId());
+                slots.acquireUninterruptibly();
+                if (match.isEmpty()) {
+                    backfillUploads.acquire();
+                }
+                checkpoint.started(ride.tcxId());
+                isolated(
+                                ride,
+                                findOrSync(
+                                        peloton,
+                                        garmin,
+                                        ride,
+                                        ride.ride().get(),
+                                        match,
+                                        garminAccount,
+                                        account,
+                                        abandoned,
+                                        options))
+                        .whenComplete((record, error) -> {
+                            try {
+                                if (record == null) {
+                                    if (!isCancellation(error)) {
+                                        failure.compareAndSet(null, error);
+                                    }
+                                    abandoned.set(true);
+                                } else if (record.outcome() == Outcome.FAILED) {
+                                    // a failed ride stays in flight, so the checkpoint never passes it
+                                    anyRideFailed.set(true);
+                                    progress.failed(record);
+                                } else {
+                                    progress.synced(record);
+                                    Instant done = checkpoint.finished(ride.tcxId());
+                                    account.ifPresent(a -> a.checkpointBackfill(done));
+                                }
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                                abandoned.set(true);
+                            } finally {
+                                slots.release();
+                            }
+                        });
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        // wait for the rides in flight
+        slots.acquireUninterruptibly(BACKFILL_RIDES_IN_FLIGHT);
+
+        if (failure.get() != null) {
+            log.error("Error during backfill", failure.get());
+            return new Response(null, "Error during backfill");
+        }
+        if (!anyRideFailed.get()) {
+            account.ifPresent(SyncLedger.Account::finishBackfill);
+        }
+        return new Response(List.of(), null);
+    }
+
+    /** Logs in to both services, returning a description of the problem if either login fails. */
+    private static Optional<String> loginError(PelotonClient peloton, GarminClient garmin) {
+        try (Span ignored = Spans.forCurrentTrace("validatePelotonLogin")) {
+            if (!peloton.validateLogin()) {
+                return Optional.of("Unable to login to Peloton with the provided credentials");
+            }
+        }
+        try (Span ignored = Spans.forCurrentTrace("validateGarminLogin")) {
+            if (!garmin.validateLogin()) {
+                return Optional.of("Unable to login to Garmin with the provided credentials");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Tracks the rides a backfill has in flight, to find the start time after which every ride has
+     * been synchronized: rides start newest first, so that is the start of the newest ride still in
+     * flight or, with none in flight, of the last ride started.
+     */
+    private static final class BackfillCheckpoint {
+        private final NavigableMap<Instant, Integer> inFlight = new TreeMap<>();
+        private Instant lastStarted;
+
+        synchronized void started(Instant start) {
+            inFlight.merge(start, 1, Integer::sum);
+            lastStarted = start;
+        }
+
+        synchronized Instant finished(Instant start) {
+            inFlight.computeIfPresent(start, (ignored, count) -> count == 1 ? null : count - 1);
+            return inFlight.isEmpty() ? lastStarted : inFlight.lastKey();
+        }
+    }
+
     public record Request(
             String pelotonEmail,
             String pelotonPassword,
             String garminEmail,
             String garminPassword,
             String garminPelotonGearName,
-            int numDaysToSync) {}
+            int numDaysToSync,
+            Optional<UploadFormat> uploadFormat,
+            Optional<Boolean> compressUpload,
+            Optional<Integer> metricsEveryN,
+            Optional<Integer> maxTrackpoints,
+            Optional<Boolean> uploadFirst) {}
+
+    public record BackfillRequest(
+            String pelotonEmail,
+            String pelotonPassword,
+            String garminEmail,
+            String garminPassword,
+            String garminPelotonGearName,
+            Optional<LocalDate> since,
+            Optional<UploadFormat> uploadFormat,
+            Optional<Boolean> compressUpload) {}
+
+    /** The file format rides are converted to before they're uploaded to Garmin. */
+    public enum UploadFormat {
+        @JsonProperty("tcx")
+        TCX,
+        @JsonProperty("fit")
+        FIT
+    }
+
+    private record UploadOptions(
+            UploadFormat format, boolean compress, Sampling sampling, boolean uploadFirst, Priority priority) {}
 
+    /**
+     * The outcome of synchronizing one ride. A {@code failure} describes why a ride {@link
+     * Outcome#FAILED failed}, in which case it has no {@code garminLink}.
+     */
     public record SyncRecord(
             LocalDate activityDate,
             String title,
             String description,
             String pelotonLink,
             String garminLink,
-            boolean wasCreated) {}
+            boolean wasCreated,
+            Optional<BestEfforts> bestEfforts,
+            Outcome outcome,
+            Optional<String> failure) {}
+
+    public enum Outcome {
+        @JsonProperty("uploaded")
+        UPLOADED,
+        @JsonProperty("matched")
+        MATCHED,
+        @JsonProperty("failed")
+        FAILED
+    }
+
+    /** A ride sent to Garmin, which {@code created} an activity unless Garmin already had it. */
+    private record UploadedRide(GarminActivityId activityId, boolean created, BestEfforts bestEfforts) {}
 
     public record Response(List<SyncRecord> result, String error) {}
 
-    private static List<SyncRecord> syncLastNDays(PelotonClient peloton, GarminClient garmin, int numDays) {
+    /**
+     * Synchronizes the rides of the last {@code numDays}. With a ledger whose watermark covers the
+     * whole of that range, rides up to the watermark are reported from the ledger and only newer
+     * activities are listed from either service, so a routine sync needs a single page of each.
+     * When uploading first, Garmin's activities aren't listed at all, and Garmin's duplicate
+     * detection matches rides instead.
+     *
+     * <p>Each ride succeeds or fails on its own, after retries, and failed rides are reported with
+     * the rest. The watermark stops short of the oldest failed ride so that the next sync retries the
+     * failed rides while the ledger spares it the rides that succeeded.
+     */
+    private List<SyncRecord> syncLastNDays(
+            PelotonClient peloton,
+            GarminClient garmin,
+            int numDays,
+            String garminAccount,
+            Optional<SyncLedger.Account> account,
+            SyncProgress progress,
+            UploadOptions options) {
         Instant thirtyDaysAgo = Instant.now().minus(Period.ofDays(numDays));
+        Instant scanAfter = account.flatMap(a -> a.watermark(thirtyDaysAgo)).orElse(thirtyDaysAgo);
 
-        List<GarminActivity> garminActivitiesLastMonth;
+        GarminActivityIndex garminActivitiesLastMonth;
         try (Span ignored = Spans.forCurrentTrace("garminActivitiesLastMonth")) {
-            garminActivitiesLastMonth = garmin.activitiesAsStream()
-                    .takeWhile(ga -> ga.tcxId().isAfter(thirtyDaysAgo))
-                    .toList();
+            garminActivitiesLastMonth = GarminActivityIndex.of(
+                    options.uploadFirst()
+                            ? List.of()
+                            : garminActivities.since(garmin, garminAccount, scanAfter.minus(MATCH_TOLERANCE)));
         }
 
-        return peloton.activitiesAsStream()
-                .takeWhile(pa -> pa.tcxId().isAfter(thirtyDaysAgo))
+        List<PelotonActivity> scanned = peloton.activitiesAsStream()
+                .takeWhile(pa -> pa.tcxId().isAfter(scanAfter))
+                .toList();
+
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Set<Instant> failedStarts = ConcurrentHashMap.newKeySet();
+        Stream<CompletableFuture<SyncRecord>> newRecords = scanned.stream()
                 .filter(pelotonActivity ->
                         pelotonActivity.fitnessDiscipline().equals(PelotonActivity.FITNESS_DISCIPLINE_CYCLING))
                 .filter(pelotonActivity -> pelotonActivity.ride().isPresent())
-                .map(pelotonActivity -> findOrSync(
-                        peloton,
-                        garmin,
-                        pelotonActivity,
-                        pelotonActivity.ride().get(),
-                        garminActivitiesLastMonth.stream()))
+                .map(pelotonActivity -> account.flatMap(a -> a.get(pelotonActivity.id()))
+                        .map(entry -> CompletableFuture.completedFuture(recordOf(entry)))
+                        .orElseGet(() -> isolated(
+                                        pelotonActivity,
+                                        findOrSync(
+                                                peloton,
+                                                garmin,
+                                                pelotonActivity,
+                                                pelotonActivity.ride().get(),
+                                                findMatchingGarminActivity(
+                                                        garminActivitiesLastMonth, pelotonActivity.tcxId()),
+                                                garminAccount,
+                                                account,
+                                                abandoned,
+                                                options))
+                                .thenApply(record -> {
+                                    if (record.outcome() == Outcome.FAILED) {
+                                        failedStarts.add(pelotonActivity.tcxId());
+                                    }
+                                    return record;
+                                })));
+        Stream<CompletableFuture<SyncRecord>> ledgerRecords = account.stream()
+                .flatMap(a -> a.since(thirtyDaysAgo).stream())
+                .filter(entry -> !entry.start().isAfter(scanAfter))
+                .map(entry -> CompletableFuture.completedFuture(recordOf(entry)));
+
+        List<CompletableFuture<SyncRecord>> records = Stream.concat(newRecords, ledgerRecords)
+                .peek(record -> progress.scanned())
+                .map(record -> record.whenComplete((completed, error) -> {
+                    if (completed == null) {
+                        return;
+                    }
+                    if (completed.outcome() == Outcome.FAILED) {
+                        progress.failed(completed);
+                    } else {
+                        progress.synced(completed);
+                    }
+                }))
                 .toList();
+        List<SyncRecord> synced = joinInOrder(records, abandoned);
+
+        // every activity listed older than the oldest failure has now been dealt with, so later syncs
+        // can start from the newest of those; those before the scan were covered by earlier syncs
+        Optional<Instant> oldestFailure = failedStarts.stream().min(Comparator.naturalOrder());
+        account.ifPresent(a -> scanned.stream()
+                .map(PelotonActivity::tcxId)
+                .filter(start -> oldestFailure.map(start::isBefore).orElse(true))
+                .max(Comparator.naturalOrder())
+                .ifPresent(watermark -> a.advanceWatermark(scanAfter, watermark)));
+        return synced;
     }
 
-    private static SyncRecord findOrSync(
+    private CompletableFuture<SyncRecord> findOrSync(
             PelotonClient peloton,
             GarminClient garmin,
             PelotonActivity pelotonRide,
             RidePointer ridePointer,
-            Stream<GarminActivity> garminActivities) {
-        Optional<GarminActivity> matchedGarminActivity =
-                findMatchingGarminActivity(garminActivities, pelotonRide.tcxId());
+            Optional<GarminActivity> matchedGarminActivity,
+            String garminAccount,
+            Optional<SyncLedger.Account> account,
+            AtomicBoolean abandoned,
+            UploadOptions options) {
+        // best efforts are only known for rides we upload, as only those have their metrics fetched
+        CompletableFuture<Optional<UploadedRide>> uploadedRide = matchedGarminActivity.isPresent()
+                ? CompletableFuture.completedFuture(Optional.empty())
+                : uploadRideToGarmin(peloton, garmin, pelotonRide, abandoned, options)
+                        .thenApply(Optional::of);
 
-        GarminActivityId garminActivityId = matchedGarminActivity
-                .map(GarminActivity::activityId)
-                .orElseGet(() -> uploadRideToGarmin(peloton, garmin, pelotonRide));
+        return uploadedRide.thenApply(uploaded -> {
+            GarminActivityId garminActivityId = matchedGarminActivity
+                    .map(GarminActivity::activityId)
+                    .orElseGet(() -> uploaded.get().activityId());
+            if (uploaded.filter(UploadedRide::created).isPresent()) {
+                garminActivities.add(
+                        garminAccount,
+                        GarminActivity.created(garminActivityId, ridePointer.title(), pelotonRide.tcxId()));
+            }
+            account.ifPresent(a -> a.record(new SyncLedger.Entry(
+                    pelotonRide.id(),
+                    garminActivityId,
+                    pelotonRide.tcxId(),
+                    getActivityDate(pelotonRide),
+                    ridePointer.title(),
+                    ridePointer.description())));
+            return new SyncRecord(
+                    getActivityDate(pelotonRide),
+                    ridePointer.title(),
+                    ridePointer.description(),
+                    pelotonLink(pelotonRide.id()),
+                    garminLink(garminActivityId),
+                    uploaded.filter(UploadedRide::created).isPresent(),
+                    uploaded.filter(UploadedRide::created).map(UploadedRide::bestEfforts),
+                    uploaded.filter(UploadedRide::created).isPresent() ? Outcome.UPLOADED : Outcome.MATCHED,
+                    Optional.empty());
+        });
+    }
 
+    /**
+     * Turns the failure of a ride into a record of that failure, so that one ride failing doesn't
+     * fail the rides around it. Cancellations still fail the future.
+     */
+    private static CompletableFuture<SyncRecord> isolated(
+            PelotonActivity pelotonRide, CompletableFuture<SyncRecord> record) {
+        return record.exceptionally(error -> {
+            if (isCancellation(error)) {
+                throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+            }
+            log.warn("Unable to synchronize ride {}", pelotonRide.id(), error);
+            RidePointer ridePointer = pelotonRide.ride().get();
+            String failure = Throwables.getRootCause(error).getMessage();
+            return new SyncRecord(
+                    getActivityDate(pelotonRide),
+                    ridePointer.title(),
+                    ridePointer.description(),
+                    pelotonLink(pelotonRide.id()),
+                    null,
+                    false,
+                    Optional.empty(),
+                    Outcome.FAILED,
+                    Optional.of(
+                            failure != null
+                                    ? Ascii.truncate(failure, MAX_FAILURE_LENGTH, "...")
+                                    : "Error during sync"));
+        });
+    }
+
+    /** A record for a ride synchronized by an earlier sync, which like any matched ride wasn't created. */
+    private static SyncRecord recordOf(SyncLedger.Entry entry) {
         return new SyncRecord(
-                getActivityDate(pelotonRide),
-                ridePointer.title(),
-                ridePointer.description(),
-                "https://members.onepeloton.com/profile/workouts/" + pelotonRide.id(),
-                "https://connect.garmin.com/modern/activity/" + garminActivityId,
-                matchedGarminActivity.isEmpty());
+                entry.activityDate(),
+                entry.title(),
+                entry.description(),
+                pelotonLink(entry.activity()),
+                garminLink(entry.garminActivity()),
+                false,
+                Optional.empty(),
+                Outcome.MATCHED,
+                Optional.empty());
+    }
+
+    private static String pelotonLink(ActivityId activityId) {
+        return "https://members.onepeloton.com/profile/workouts/" + activityId;
     }
 
-    private static GarminActivityId uploadRideToGarmin(
-            PelotonClient peloton, GarminClient garmin, PelotonActivity lastPelotonRide) {
-        Ride rideDetails = peloton.ride(lastPelotonRide.ride().get()).orElseThrow(HttpError::toException);
-        PerformanceSummary metrics = peloton.metrics(lastPelotonRide.id()).orElseThrow(HttpError::toException);
-        Tcx tcx = PelotonToTcx.convertToTcx(lastPelotonRide, rideDetails, metrics);
+    private static String garminLink(GarminActivityId activityId) {
+        return "https://connect.garmin.com/modern/activity/" + activityId;
+    }
 
-        GarminActivityId garminActivityId = garmin.uploadTcx(tcx).orElseThrow(HttpError::toException);
+    /**
+     * Uploads a ride in three stages: fetching from Peloton and uploading to Garmin each run on a
+     * pool that caps concurrent requests to that service, and best efforts are computed on the common
+     * pool, so that many rides are in flight at once without overwhelming either service. Failed
+     * requests are retried a few times, and once a sync is {@code abandoned} its rides make no further
+     * requests.
+     *
+     * <p>Rides waiting for the Garmin stage hold only their metrics. The upload file is rendered in
+     * that stage, just before it is sent: a TCX document is written into a request body buffered in
+     * 64 KiB chunks rather than one array, and a FIT file, which has to be encoded whole, is built in
+     * one piece. Either way the file is held only for the length of its upload, so the memory held by
+     * upload files is bounded by the number of Garmin requests in flight.
+     */
+    private CompletableFuture<UploadedRide> uploadRideToGarmin(
+            PelotonClient peloton,
+            GarminClient garmin,
+            PelotonActivity lastPelotonRide,
+            AtomicBoolean abandoned,
+            UploadOptions options) {
+        return CompletableFuture.supplyAsync(
+                        () -> withRetries(
+                                abandoned, () -> workouts.workout(peloton, lastPelotonRide, options.sampling())),
+                        pelotonExecutor.at(options.priority()))
+                .thenApplyAsync(MeasuredRide::of, ForkJoinPool.commonPool())
+                .thenApplyAsync(
+                        measured -> uploadMeasured(garmin, measured, abandoned, options),
+                        garminExecutor.at(options.priority()));
+    }
+
+    private static UploadedRide uploadMeasured(
+            GarminClient garmin, MeasuredRide measured, AtomicBoolean abandoned, UploadOptions options) {
+        PelotonActivity activity = measured.workout().activity();
+        Ride rideDetails = measured.workout().ride();
+        // a retry of an upload that succeeded without our hearing of it finds the upload as a duplicate
+        GarminUpload upload = withRetries(
+                abandoned, () -> upload(garmin, measured.workout(), options).orElseThrow(HttpError::toException));
+        GarminActivityId garminActivityId = upload.activityId();
+        if (upload.duplicate()) {
+            // Garmin already had this ride, so leave the existing activity as it is
+            return new UploadedRide(garminActivityId, false, measured.bestEfforts());
+        }
 
         String title = rideDetails.ride().titleWithInstructor();
-        String description = rideDetails.ride().description();
-        garmin.updateActivity(garminActivityId, title, description).orElseThrow(HttpError::toException);
+        BestEfforts bestEfforts = measured.bestEfforts();
+        String description = bestEfforts.efforts().isEmpty()
+                ? rideDetails.ride().description()
+                : rideDetails.ride().description() + "\n\n" + bestEfforts.describe();
+        withRetries(abandoned, () -> garmin.updateActivity(garminActivityId, title, description)
+                .orElseThrow(HttpError::toException));
+
+        garmin.setNamedGear(garminActivityId, getActivityDate(activity), garmin.pelotonGear());
+
+        return new UploadedRide(garminActivityId, true, bestEfforts);
+    }
+
+    /** A workout along with its best efforts. */
+    private record MeasuredRide(StoredWorkout workout, BestEfforts bestEfforts) {
+        static MeasuredRide of(StoredWorkout workout) {
+            return new MeasuredRide(workout, MeanMaximal.bestEfforts(MeanMaximal.powerCurve(workout.metrics())));
+        }
+    }
+
+    /** Renders {@code workout} in the upload format while uploading it. */
+    private static Result<GarminUpload, HttpError> upload(
+            GarminClient garmin, StoredWorkout workout, UploadOptions options) {
+        return switch (options.format()) {
+            case TCX -> {
+                UploadContent tcx = out -> PelotonToTcx.writeTcx(
+                        workout.activity(), workout.ride(), workout.metrics(), options.sampling(), out);
+                yield options.compress()
+                        ? garmin.uploadZippedOrFindDuplicate("activity.tcx", tcx)
+                        : garmin.uploadTcxOrFindDuplicate(tcx);
+            }
+            case FIT -> {
+                Fit fit = PelotonToFit.convertToFit(
+                        workout.activity(), workout.ride(), workout.metrics(), options.sampling());
+                yield options.compress()
+                        ? garmin.uploadZippedOrFindDuplicate("activity.fit", out -> out.write(fit.value()))
+                        : garmin.uploadFitOrFindDuplicate(fit);
+            }
+        };
+    }
 
-        garmin.setNamedGear(garminActivityId, getActivityDate(lastPelotonRide), garmin.pelotonGear());
+    private static <T> T unlessAbandoned(AtomicBoolean abandoned, Supplier<T> work) {
+        if (abandoned.get()) {
+            throw new CancellationException("Sync abandoned after an earlier failure");
+        }
+        return work.get();
+    }
+
+    /**
+     * Runs {@code work} unless the sync has been abandoned, retrying transient failures up to {@link
+     * #MAX_ATTEMPTS} times. Retries wait on the calling thread, which holds back that service's
+     * other requests too, as a failure is often the service asking us to slow down. Other failures,
+     * such as a rejected request or a ride that can't be converted, would only fail again, so they
+     * are rethrown at once.
+     */
+    static <T> T withRetries(AtomicBoolean abandoned, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return unlessAbandoned(abandoned, work);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                log.info("Retrying after attempt {} failed", attempt, e);
+                try {
+                    Thread.sleep(RETRY_BACKOFF.multipliedBy(1L << (attempt - 1)).toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting to retry");
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException error) {
+        return error instanceof UncheckedIOException
+                || (error instanceof HttpErrorException http && http.error().isTransient());
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        return error instanceof CancellationException || error.getCause() instanceof CancellationException;
+    }
 
-        return garminActivityId;
+    /**
+     * Waits for each result in turn, so results keep the order of {@code futures} however their work
+     * interleaves; the first failure abandons the work that hasn't started and is rethrown.
+     */
+    private static <T> List<T> joinInOrder(List<CompletableFuture<T>> futures, AtomicBoolean abandoned) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            abandoned.set(true);
+            futures.forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
     }
 
-    private static LocalDate getActivityDate(PelotonActivity lastPelotonRide) {
+    static LocalDate getActivityDate(PelotonActivity lastPelotonRide) {
         // TODO(markelliot): pretty sure Peloton rides are in rider-local time not UTC, so this is
         //   probably wrong in some edge cases
         return LocalDateTime.ofEpochSecond(lastPelotonRide.created(), 0, ZoneOffset.UTC)
@@ -188,17 +829,10 @@ public final class SyncPelotonToGarmin {
 
     /**
      * For all Garmin activities in the last month find a ride with exactly the same start or within
-     * +/- 2 minutes of the start.
+     * +/- 2 minutes of the start, preferring the nearest.
      */
     private static Optional<GarminActivity> findMatchingGarminActivity(
-            Stream<GarminActivity> garminActivities, Instant activityStart) {
-        return garminActivities
-                .takeWhile(ga -> ga.tcxId().isAfter(activityStart.minusSeconds(120L)))
-                .filter(ga -> {
-                    Instant gId = ga.tcxId();
-                    return gId.isAfter(activityStart.minusSeconds(120L))
-                            && gId.isBefore(activityStart.plusSeconds(120L));
-                })
-                .findFirst();
+            GarminActivityIndex index, Instant activityStart) {
+        return index.nearest(activityStart, MATCH_TOLERANCE);
     }
 }
@@ -0,0 +1,95 @@
+package io.allezgo.endpoints;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+import io.allezgo.server.StreamingResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Synchronizes a batch of accounts at once, streaming each account's result to the client as
+ * newline-delimited JSON as soon as that account's sync finishes.
+ *
+ * <p>Accounts from all batches share one pool, which syncs a few accounts at a time and queues the
+ * rest. Their requests to Peloton and Garmin share the same pools, capped per service, and the same
+ * caches of Garmin listings and class details as every other sync.
+ */
+public final class SyncPelotonToGarminBatch {
+    private static final Logger log = LoggerFactory.getLogger(SyncPelotonToGarminBatch.class);
+    private static final int MAX_ACCOUNTS = 100;
+    private static final int MAX_CONCURRENT_ACCOUNTS = 8;
+
+    private final Function<Request, Response> sync;
+    private final ExecutorService executor;
+
+    public SyncPelotonToGarminBatch(SyncPelotonToGarmin sync) {
+        this(
+                sync::call,
+                Executors.newFixedThreadPool(
+                        MAX_CONCURRENT_ACCOUNTS,
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("batch-sync-%d")
+                                .setDaemon(true)
+                                .build()));
+    }
+
+    SyncPelotonToGarminBatch(Function<Request, Response> sync, ExecutorService executor) {
+        this.sync = sync;
+        this.executor = executor;
+    }
+
+    public StreamingResponse call(BatchRequest request) {
+        if (request.accounts() == null || request.accounts().isEmpty()) {
+            return StreamingResponse.error(400, "accounts must list at least one account");
+        }
+        if (request.accounts().size() > MAX_ACCOUNTS) {
+            return StreamingResponse.error(400, "accounts may list at most " + MAX_ACCOUNTS + " accounts");
+        }
+
+        List<Request> accounts = request.accounts();
+        BlockingQueue<AccountResult> results = new LinkedBlockingQueue<>();
+        for (int i = 0; i < accounts.size(); i++) {
+            int index = i;
+            executor.execute(() -> results.add(syncAccount(index, accounts.get(index))));
+        }
+
+        return StreamingResponse.jsonLines(out -> {
+            try {
+                for (int i = 0; i < accounts.size(); i++) {
+                    out.write(results.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private AccountResult syncAccount(int index, Request account) {
+        Response response;
+        try {
+            response = sync.apply(account);
+        } catch (RuntimeException e) {
+            log.error("Error during batch sync", e);
+            response = new Response(null, "Error during sync");
+        }
+        String error = response.result() == null && response.error() == null ? "Error during sync" : response.error();
+        return new AccountResult(index, account.pelotonEmail(), account.garminEmail(), response.result(), error);
+    }
+
+    public record BatchRequest(List<Request> accounts) {}
+
+    /**
+     * The outcome for the account at {@code index} in the request, with one of {@code result} or
+     * {@code error}.
+     */
+    public record AccountResult(
+            int index, String pelotonEmail, String garminEmail, List<SyncRecord> result, String error) {}
+}
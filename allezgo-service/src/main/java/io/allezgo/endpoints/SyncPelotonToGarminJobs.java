@@ -0,0 +1,195 @@
+package io.allezgo.endpoints;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.markelliot.barista.annotations.Http;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs Peloton to Garmin synchronizations in the background: starting a job returns its id as soon
+ * as the request is validated, and the job's progress and results can be polled until it has been
+ * finished for longer than the retention period. At most {@link #MAX_CONCURRENT_JOBS} jobs run at
+ * once and {@link #MAX_QUEUED_JOBS} more wait for them; further requests are turned away.
+ */
+public final class SyncPelotonToGarminJobs {
+    private static final Logger log = LoggerFactory.getLogger(SyncPelotonToGarminJobs.class);
+    private static final int MAX_CONCURRENT_JOBS = 8;
+    private static final int MAX_QUEUED_JOBS = 32;
+    private static final Duration RETENTION = Duration.ofHours(1);
+
+    private final BiFunction<Request, SyncProgress, Response> sync;
+    private final ExecutorService executor;
+    private final Clock clock;
+    private final Duration retention;
+    private final Map<String, SyncJob> jobs = new ConcurrentHashMap<>();
+
+    public SyncPelotonToGarminJobs(SyncPelotonToGarmin sync) {
+        this(sync::sync, executor(MAX_CONCURRENT_JOBS, MAX_QUEUED_JOBS), Clock.systemUTC(), RETENTION);
+    }
+
+    SyncPelotonToGarminJobs(
+            BiFunction<Request, SyncProgress, Response> sync,
+            ExecutorService executor,
+            Clock clock,
+            Duration retention) {
+        this.sync = sync;
+        this.executor = executor;
+        this.clock = clock;
+        this.retention = retention;
+    }
+
+    static ExecutorService executor(int concurrentJobs, int queuedJobs) {
+        return new ThreadPoolExecutor(
+                concurrentJobs,
+                concurrentJobs,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queuedJobs),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("sync-job-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    @Http.Put("/api/synchronize/peloton-to-garmin/jobs")
+    public JobResponse start(Request request) {
+        evictExpired();
+        Optional<String> invalid = SyncPelotonToGarmin.validate(request);
+        if (invalid.isPresent()) {
+            return new JobResponse(null, invalid.get());
+        }
+
+        SyncJob job = new SyncJob(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, request));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            return new JobResponse(null, "Unable to start sync, please try again later");
+        }
+        return new JobResponse(job.status(), null);
+    }
+
+    @Http.Get("/api/synchronize/peloton-to-garmin/jobs/{jobId}")
+    public JobResponse status(@Http.PathParam String jobId) {
+        evictExpired();
+        SyncJob job = jobs.get(jobId);
+        if (job == null) {
+            return new JobResponse(
+                    null,
+                    "No sync job " + jobId + ", it may have finished more than " + retention.toMinutes()
+                            + " minutes ago");
+        }
+        return new JobResponse(job.status(), null);
+    }
+
+    public enum State {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    /**
+     * A snapshot of a job; {@code result} holds the rides synchronized so far in the order they
+     * completed until the job succeeds, and then in the order of a synchronous sync.
+     */
+    public record JobStatus(
+            String jobId,
+            State state,
+            int scanned,
+            int matched,
+            int uploaded,
+            int failed,
+            List<SyncRecord> result,
+            String error) {}
+
+    public record JobResponse(JobStatus result, String error) {}
+
+    private void run(SyncJob job, Request request) {
+        Response response;
+        try {
+            response = sync.apply(request, job);
+        } catch (RuntimeException e) {
+            log.error("Error during sync job", e);
+            response = new Response(null, "Error during sync");
+        }
+        job.finish(response, clock.instant());
+    }
+
+    private void evictExpired() {
+        Instant cutoff = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> job.finishedBefore(cutoff));
+    }
+
+    private static final class SyncJob implements SyncProgress {
+        private final String id;
+        private final AtomicInteger scanned = new AtomicInteger();
+        private final AtomicInteger matched = new AtomicInteger();
+        private final AtomicInteger uploaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private List<SyncRecord> records = new ArrayList<>();
+        private State state = State.RUNNING;
+        private String error;
+        private Instant finishedAt;
+
+        SyncJob(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void scanned() {
+            scanned.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void synced(SyncRecord record) {
+            (record.wasCreated() ? uploaded : matched).incrementAndGet();
+            records.add(record);
+        }
+
+        @Override
+        public synchronized void failed(SyncRecord record) {
+            failed.incrementAndGet();
+            records.add(record);
+        }
+
+        synchronized void finish(Response response, Instant now) {
+            if (response.result() != null) {
+                state = State.SUCCEEDED;
+                records = new ArrayList<>(response.result());
+            } else {
+                state = State.FAILED;
+                error = response.error() != null ? response.error() : "Error during sync";
+            }
+            finishedAt = now;
+        }
+
+        synchronized boolean finishedBefore(Instant cutoff) {
+            return finishedAt != null && finishedAt.isBefore(cutoff);
+        }
+
+        synchronized JobStatus status() {
+            return new JobStatus(
+                    id, state, scanned.get(), matched.get(), uploaded.get(), failed.get(), List.copyOf(records), error);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.allezgo.endpoints;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.allezgo.endpoints.SyncPelotonToGarmin.BackfillRequest;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+import io.allezgo.server.StreamingResponse;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a Peloton to Garmin synchronization, or a backfill, and streams each ride's {@link
+ * SyncRecord} to the client as newline-delimited JSON as soon as the ride is matched or uploaded,
+ * rather than waiting for the whole sync. Every line is a {@link Line} holding either a {@code
+ * record} or, when the sync fails, a final {@code error}; rides completed before a failure have
+ * already been sent.
+ */
+public final class SyncPelotonToGarminStream<T> {
+    private static final Logger log = LoggerFactory.getLogger(SyncPelotonToGarminStream.class);
+    private static final int MAX_CONCURRENT_SYNCS = 8;
+    private static final Line END = new Line(null, null);
+
+    private final Function<T, Optional<String>> validate;
+    private final BiFunction<T, SyncProgress, Response> sync;
+    private final ExecutorService executor;
+
+    SyncPelotonToGarminStream(
+            Function<T, Optional<String>> validate,
+            BiFunction<T, SyncProgress, Response> sync,
+            ExecutorService executor) {
+        this.validate = validate;
+        this.sync = sync;
+        this.executor = executor;
+    }
+
+    /** Streams synchronizations of the last few days, see {@link SyncPelotonToGarmin#call}. */
+    public static SyncPelotonToGarminStream<Request> sync(SyncPelotonToGarmin sync) {
+        return new SyncPelotonToGarminStream<>(SyncPelotonToGarmin::validate, sync::sync, executor("sync-stream"));
+    }
+
+    /** Streams backfills of whole histories, see {@link SyncPelotonToGarmin#backfill}. */
+    public static SyncPelotonToGarminStream<BackfillRequest> backfill(SyncPelotonToGarmin sync) {
+        return new SyncPelotonToGarminStream<>(
+                SyncPelotonToGarmin::validate, sync::backfill, executor("sync-backfill"));
+    }
+
+    private static ExecutorService executor(String name) {
+        return Executors.newFixedThreadPool(
+                MAX_CONCURRENT_SYNCS,
+                new ThreadFactoryBuilder()
+                        .setNameFormat(name + "-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    public StreamingResponse call(T request) {
+        Optional<String> invalid = validate.apply(request);
+        if (invalid.isPresent()) {
+            return StreamingResponse.error(400, invalid.get());
+        }
+
+        // rides complete on the sync's worker threads, and are handed to the request's thread to write
+        // so that a slow client never holds up the sync
+        BlockingQueue<Line> lines = new LinkedBlockingQueue<>();
+        executor.execute(() -> {
+            try {
+                Response response = sync.apply(request, new SyncProgress() {
+                    @Override
+                    public void synced(SyncRecord record) {
+                        lines.add(new Line(record, null));
+                    }
+
+                    @Override
+                    public void failed(SyncRecord record) {
+                        lines.add(new Line(record, null));
+                    }
+                });
+                if (response.result() == null) {
+                    lines.add(new Line(null, response.error() != null ? response.error() : "Error during sync"));
+                }
+            } catch (RuntimeException e) {
+                log.error("Error during streamed sync", e);
+                lines.add(new Line(null, "Error during sync"));
+            } finally {
+                lines.add(END);
+            }
+        });
+
+        return StreamingResponse.jsonLines(out -> {
+            try {
+                for (Line line = lines.take(); line != END; line = lines.take()) {
+                    out.write(line);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    public record Line(SyncRecord record, String error) {}
+}
@@ -0,0 +1,20 @@
+package io.allezgo.endpoints;
+
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+
+/**
+ * Receives updates as a sync works through rides. Rides may complete in any order and updates may
+ * arrive from any thread.
+ */
+interface SyncProgress {
+    SyncProgress NONE = new SyncProgress() {};
+
+    /** A Peloton ride was found that should be present in Garmin. */
+    default void scanned() {}
+
+    /** A ride was matched to an existing Garmin activity, or uploaded as a new one. */
+    default void synced(SyncRecord record) {}
+
+    /** A ride could not be synchronized, as described by its {@link SyncRecord#failure}. */
+    default void failed(SyncRecord record) {}
+}
@@ -0,0 +1,69 @@
+package io.allezgo.endpoints;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PelotonClient;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import io.allezgo.adapters.peloton.RideId;
+import io.allezgo.adapters.peloton.RidePointer;
+import io.allezgo.adapters.peloton.Sampling;
+import io.allezgo.client.HttpError;
+import io.allezgo.store.StoredWorkout;
+import io.allezgo.store.WorkoutStore;
+import java.time.Duration;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the ride details and metrics for Peloton workouts, preferring an optional local store. Ride
+ * details describe a class rather than a rider's workout, so are cached and shared by every rider
+ * who takes the same class.
+ */
+final class WorkoutSource {
+    private static final Logger log = LoggerFactory.getLogger(WorkoutSource.class);
+    private static final Duration RIDE_EXPIRY = Duration.ofHours(6);
+    private static final int MAX_RIDES = 10_000;
+
+    private final Optional<WorkoutStore> store;
+    private final Cache<RideId, Ride> rides = CacheBuilder.newBuilder()
+            .expireAfterWrite(RIDE_EXPIRY)
+            .maximumSize(MAX_RIDES)
+            .build();
+
+    WorkoutSource(Optional<WorkoutStore> store) {
+        this.store = store;
+    }
+
+    /** Returns the ride details and metrics for an activity from the store, or else from Peloton. */
+    StoredWorkout workout(PelotonClient peloton, PelotonActivity activity, Sampling sampling) {
+        Optional<StoredWorkout> stored = store.flatMap(s -> s.get(activity.id()));
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        Ride rideDetails = rideDetails(peloton, activity.ride().get());
+        PerformanceSummary metrics =
+                peloton.metrics(activity.id(), sampling.everyN()).orElseThrow(HttpError::toException);
+        // only keep full resolution metrics so a stored workout is never coarser than requested
+        if (sampling.everyN() == 1) {
+            try {
+                store.ifPresent(s -> s.put(activity, rideDetails, metrics));
+            } catch (RuntimeException e) {
+                log.warn("Unable to store workout", e);
+            }
+        }
+        return new StoredWorkout(activity, rideDetails, metrics);
+    }
+
+    private Ride rideDetails(PelotonClient peloton, RidePointer ride) {
+        Ride rideDetails = rides.getIfPresent(ride.id());
+        if (rideDetails == null) {
+            rideDetails = peloton.ride(ride).orElseThrow(HttpError::toException);
+            rides.put(ride.id(), rideDetails);
+        }
+        return rideDetails;
+    }
+}
@@ -0,0 +1,51 @@
+package io.allezgo.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response whose body is written directly to the connection, in chunks, as it is produced rather
+ * than serialized up front.
+ */
+public record StreamingResponse(int status, String contentType, Body body) {
+    @FunctionalInterface
+    public interface Body {
+        /** Writes the body to {@code out}; implementations must not close the stream. */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Writes newline-delimited JSON values, see {@link #jsonLines}. */
+    @FunctionalInterface
+    public interface JsonLinesBody {
+        void writeTo(JsonLines lines) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface JsonLines {
+        /** Writes {@code value} as one line of JSON and flushes it to the client. */
+        void write(Object value) throws IOException;
+    }
+
+    public static StreamingResponse ok(String contentType, Body body) {
+        return new StreamingResponse(200, contentType, body);
+    }
+
+    /** A response of newline-delimited JSON values, each sent to the client as soon as it's written. */
+    public static StreamingResponse jsonLines(JsonLinesBody body) {
+        return ok(
+                "application/x-ndjson",
+                out -> body.writeTo(value -> {
+                    StreamingServer.mapper.writeValue(out, value);
+                    out.write('\n');
+                    out.flush();
+                }));
+    }
+
+    /** A JSON {@code {"error": message}} response, matching the errors of the JSON endpoints. */
+    public static StreamingResponse error(int status, String message) {
+        return new StreamingResponse(
+                status, "application/json", out -> StreamingServer.mapper.writeValue(out, new Error(message)));
+    }
+
+    private record Error(String error) {}
+}
@@ -0,0 +1,170 @@
+package io.allezgo.server;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small HTTP server for endpoints whose responses are streamed to the client as they're produced,
+ * which the JSON endpoints served by Barista can't do.
+ *
+ * <p>Requests are JSON bodies bound to a request type as they are for the JSON endpoints, and
+ * responses use chunked transfer encoding so memory is bounded by what an endpoint holds rather than
+ * by the size of the response. Each request is served on its own thread, as streamed responses are
+ * typically long-lived and mostly waiting on upstream services.
+ */
+public final class StreamingServer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(StreamingServer.class);
+    static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private StreamingServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static final class Builder {
+        private final Set<String> allowedOrigins = new HashSet<>();
+        private final Map<String, Route<?>> routes = new LinkedHashMap<>();
+        private int port = 8444;
+
+        private Builder() {}
+
+        public Builder port(int value) {
+            this.port = value;
+            return this;
+        }
+
+        public Builder allowOrigin(String origin) {
+            allowedOrigins.add(origin);
+            return this;
+        }
+
+        public <T> Builder put(String path, Class<T> requestType, Function<T, StreamingResponse> handler) {
+            routes.put(path, new Route<>("PUT", requestType, handler));
+            return this;
+        }
+
+        public StreamingServer start() {
+            HttpServer server;
+            try {
+                server = HttpServer.create(new InetSocketAddress(port), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to start streaming server on port " + port, e);
+            }
+            ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "streaming-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+            server.setExecutor(executor);
+            Set<String> origins = Set.copyOf(allowedOrigins);
+            routes.forEach((path, route) -> server.createContext(path, exchange -> handle(exchange, route, origins)));
+            server.start();
+            return new StreamingServer(server, executor);
+        }
+    }
+
+    private record Route<T>(String method, Class<T> requestType, Function<T, StreamingResponse> handler) {
+        StreamingResponse call(InputStream body) throws IOException {
+            T request;
+            try {
+                request = mapper.readValue(body, requestType);
+            } catch (JsonProcessingException e) {
+                return StreamingResponse.error(400, "Unable to read request: " + e.getOriginalMessage());
+            }
+            return handler.apply(request);
+        }
+    }
+
+    private static void handle(HttpExchange exchange, Route<?> route, Set<String> allowedOrigins) {
+        try (exchange) {
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (origin != null && allowedOrigins.contains(origin)) {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", origin);
+                exchange.getResponseHeaders().set("Vary", "Origin");
+            }
+            String method = exchange.getRequestMethod();
+            if (method.equals("OPTIONS")) {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Methods", route.method());
+                exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            if (!method.equals(route.method())) {
+                respond(exchange, StreamingResponse.error(405, "Method not allowed"));
+                return;
+            }
+
+            StreamingResponse response;
+            try (InputStream body = exchange.getRequestBody()) {
+                response = route.call(body);
+            } catch (RuntimeException e) {
+                log.error("Error handling request", e);
+                response = StreamingResponse.error(500, "Internal error");
+            }
+            respond(exchange, response);
+        } catch (IOException | RuntimeException e) {
+            // the response has started so there's no way left to report the problem to the client;
+            // closing the exchange ends the response where it stopped
+            log.warn("Error streaming response", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, StreamingResponse response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType());
+        // a length of zero selects chunked transfer encoding
+        exchange.sendResponseHeaders(response.status(), 0);
+        OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE);
+        response.body().writeTo(out);
+        out.flush();
+    }
+}
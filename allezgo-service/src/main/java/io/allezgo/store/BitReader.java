@@ -0,0 +1,37 @@
+package io.allezgo.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads values written by {@link BitWriter} from a region of a buffer using absolute reads, so the
+ * buffer (typically a memory-mapped segment) is never copied onto the heap.
+ */
+final class BitReader {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long bitPosition;
+
+    BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+
+    /** Reads {@code width} bits, for {@code width} in [0, 64], as the low bits of the result. */
+    long readBits(int width) {
+        long value = 0;
+        for (int remaining = width; remaining > 0; ) {
+            int current = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int count = Math.min(available, remaining);
+            int chunk = (current >>> (available - count)) & ((1 << count) - 1);
+            value = (value << count) | chunk;
+            bitPosition += count;
+            remaining -= count;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,37 @@
+package io.allezgo.store;
+
+import java.util.Arrays;
+
+/** Packs values of arbitrary bit widths, most significant bit first, into a growable byte array. */
+final class BitWriter {
+    private byte[] bytes;
+    private long bitCount;
+
+    BitWriter(int expectedBytes) {
+        this.bytes = new byte[Math.max(expectedBytes, 16)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /** Writes the low {@code width} bits of {@code value}, for {@code width} in [0, 64]. */
+    void writeBits(long value, int width) {
+        for (int remaining = width; remaining > 0; ) {
+            int index = (int) (bitCount >>> 3);
+            if (index == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int free = 8 - (int) (bitCount & 7);
+            int count = Math.min(free, remaining);
+            int chunk = (int) ((value >>> (remaining - count)) & ((1 << count) - 1));
+            bytes[index] |= (byte) (chunk << (free - count));
+            bitCount += count;
+            remaining -= count;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitCount + 7) >>> 3));
+    }
+}
@@ -0,0 +1,138 @@
+package io.allezgo.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gorilla-style encodings for columns of samples (Pelkonen et al., "Gorilla: A Fast, Scalable,
+ * In-Memory Time Series Database", VLDB 2015).
+ *
+ * <p>Integer columns store the difference from the previous value (or, for regularly spaced
+ * timestamps, the difference between consecutive differences) in a variable-length bucket, so a
+ * repeated value or step costs one bit. Floating point columns store the XOR of each value with the
+ * previous one, writing only the meaningful bits between its leading and trailing zeros and reusing
+ * the previous value's window where it fits.
+ */
+final class Columns {
+    private Columns() {}
+
+    /** Encodes {@code values} as deltas, or as delta-of-deltas when {@code deltaOfDelta} is set. */
+    static void writeLongs(BitWriter out, long[] values, boolean deltaOfDelta) {
+        long previous = 0;
+        long previousDelta = 0;
+        for (long value : values) {
+            long delta = value - previous;
+            writeBucketed(out, deltaOfDelta ? delta - previousDelta : delta);
+            previous = value;
+            previousDelta = delta;
+        }
+    }
+
+    static long[] readLongs(BitReader in, int count, boolean deltaOfDelta) {
+        long[] values = new long[count];
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long encoded = readBucketed(in);
+            long delta = deltaOfDelta ? previousDelta + encoded : encoded;
+            values[i] = previous + delta;
+            previous = values[i];
+            previousDelta = delta;
+        }
+        return values;
+    }
+
+    static void writeDoubles(BitWriter out, double[] values) {
+        long previous = 0;
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        for (double value : values) {
+            long bits = Double.doubleToRawLongBits(value);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                continue;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBit(false);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                // a 64 bit window doesn't fit in 6 bits, but can't be empty either, so store it as 0
+                out.writeBits(meaningful & 63, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    static double[] readDoubles(BitReader in, int count) {
+        double[] values = new double[count];
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6);
+                    trailing = 64 - leading - (meaningful == 0 ? 64 : meaningful);
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    private static void writeBucketed(BitWriter out, long value) {
+        if (value == 0) {
+            out.writeBit(false);
+        } else if (value >= -64 && value < 64) {
+            out.writeBits(0b10, 2);
+            out.writeBits(value, 7);
+        } else if (value >= -2048 && value < 2048) {
+            out.writeBits(0b110, 3);
+            out.writeBits(value, 12);
+        } else if (value >= -(1 << 19) && value < (1 << 19)) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(value, 20);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(value, 64);
+        }
+    }
+
+    private static long readBucketed(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(7), 7);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(12), 12);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(20), 20);
+        }
+        return in.readBits(64);
+    }
+
+    private static long signExtend(long value, int width) {
+        return (value << (64 - width)) >> (64 - width);
+    }
+
+    /** Returns a reader over the {@code length} bytes at the buffer's position, then skips them. */
+    static BitReader reader(ByteBuffer buffer, int length) {
+        BitReader reader = new BitReader(buffer, buffer.position());
+        buffer.position(buffer.position() + length);
+        return reader;
+    }
+}
@@ -0,0 +1,8 @@
+package io.allezgo.store;
+
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+
+/** Everything needed to convert a workout without calling Peloton. */
+public record StoredWorkout(PelotonActivity activity, Ride ride, PerformanceSummary metrics) {}
@@ -0,0 +1,326 @@
+package io.allezgo.store;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Bytes;
+import io.allezgo.adapters.garmin.GarminActivityId;
+import io.allezgo.adapters.peloton.ActivityId;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable record of which Peloton workouts have been synchronized to which Garmin activities, for
+ * each pair of Peloton and Garmin accounts, along with a per-account watermark: the start time up to
+ * which every Peloton workout since some earlier time has been dealt with, so later syncs of that
+ * range need only look at newer ones, and the progress of any backfill of older workouts that has
+ * yet to finish.
+ *
+ * <p>The ledger is an append-only file of JSON lines that is read into memory on open, where
+ * lookups are plain hash lookups. Lines superseded by later ones (mostly old watermarks) are
+ * dropped by compacting the file into a new one once they make up most of it. Accounts are keyed by
+ * a hash of their emails, so the ledger holds no credentials or addresses.
+ */
+public final class SyncLedger implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SyncLedger.class);
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final String LEDGER = "ledger.jsonl";
+    private static final int MIN_LINES_TO_COMPACT = 1000;
+
+    private final Path file;
+    private final Map<String, AccountState> accounts = new HashMap<>();
+    private FileChannel channel;
+    private int lines;
+
+    private SyncLedger(Path file) throws IOException {
+        this.file = file;
+        byte[] existing = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+        // a crash during a write can leave a final line without its newline, which is dropped
+        int complete = Bytes.lastIndexOf(existing, (byte) '\n') + 1;
+        for (String line :
+                Splitter.on('\n').omitEmptyStrings().split(new String(existing, 0, complete, StandardCharsets.UTF_8))) {
+            apply(mapper.readValue(line, Line.class));
+            lines++;
+        }
+        this.channel = openForAppend(file);
+        if (complete < existing.length) {
+            log.warn("Discarding incomplete final line of sync ledger");
+            channel.truncate(complete);
+            channel.force(false);
+        }
+        compactIfWasteful();
+    }
+
+    public static SyncLedger open(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            return new SyncLedger(directory.resolve(LEDGER));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open sync ledger in " + directory, e);
+        }
+    }
+
+    /** Returns the part of the ledger for syncs from the Peloton account to the Garmin account. */
+    public Account account(String pelotonEmail, String garminEmail) {
+        String key = Hashing.sha256()
+                .hashString(
+                        pelotonEmail.toLowerCase(Locale.ROOT) + "\n" + garminEmail.toLowerCase(Locale.ROOT),
+                        StandardCharsets.UTF_8)
+                .toString();
+        return new Account(key);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /** A Peloton workout and the Garmin activity it was synchronized to. */
+    public record Entry(
+            ActivityId activity,
+            GarminActivityId garminActivity,
+            Instant start,
+            LocalDate activityDate,
+            String title,
+            String description) {}
+
+    public final class Account {
+        private final String key;
+
+        private Account(String key) {
+            this.key = key;
+        }
+
+        /**
+         * The start time up to which every Peloton workout that started after {@code since} has been
+         * synchronized, if earlier syncs covered all of that range.
+         */
+        public Optional<Instant> watermark(Instant since) {
+            synchronized (SyncLedger.this) {
+                return Optional.ofNullable(accounts.get(key))
+                        .filter(state -> state.coveredFrom != null && !state.coveredFrom.isAfter(since))
+                        .map(state -> state.watermark)
+                        .filter(watermark -> watermark.isAfter(since));
+            }
+        }
+
+        public Optional<Entry> get(ActivityId activity) {
+            synchronized (SyncLedger.this) {
+                return Optional.ofNullable(accounts.get(key)).map(state -> state.entries.get(activity));
+            }
+        }
+
+        /** Returns the entries for workouts that started after {@code start}, newest first. */
+        public List<Entry> since(Instant start) {
+            synchronized (SyncLedger.this) {
+                return Optional.ofNullable(accounts.get(key)).stream()
+                        .flatMap(state -> state.entries.values().stream())
+                        .filter(entry -> entry.start().isAfter(start))
+                        .sorted(Comparator.comparing(Entry::start).reversed())
+                        .toList();
+            }
+        }
+
+        public void record(Entry entry) {
+            append(new Line(key, Optional.of(entry), Optional.empty(), Optional.empty(), Optional.empty()));
+        }
+
+        /**
+         * The start time after which every Peloton workout has been dealt with by an unfinished
+         * backfill, which a new backfill resumes from.
+         */
+        public Optional<Instant> backfillCheckpoint() {
+            synchronized (SyncLedger.this) {
+                return Optional.ofNullable(accounts.get(key))
+                        .flatMap(state -> Optional.ofNullable(state.backfillCheckpoint));
+            }
+        }
+
+        public void checkpointBackfill(Instant checkpoint) {
+            append(new Line(
+                    key,
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.empty(),
+                    Optional.of(new Backfill(Optional.of(checkpoint)))));
+        }
+
+        /** Forgets the backfill checkpoint once a backfill has finished, so the next starts afresh. */
+        public void finishBackfill() {
+            synchronized (SyncLedger.this) {
+                if (backfillCheckpoint().isPresent()) {
+                    append(new Line(
+                            key,
+                            Optional.empty(),
+                            Optional.empty(),
+                            Optional.empty(),
+                            Optional.of(new Backfill(Optional.empty()))));
+                }
+            }
+        }
+
+        /**
+         * Records that every Peloton workout that started after {@code coveredFrom}, up to {@code
+         * watermark}, has been synchronized. A range that overlaps the one already covered extends it,
+         * and otherwise the newer of the two ranges is kept.
+         */
+        public void advanceWatermark(Instant coveredFrom, Instant watermark) {
+            synchronized (SyncLedger.this) {
+                AccountState state = accounts.get(key);
+                Instant from = coveredFrom;
+                Instant to = watermark;
+                if (state != null && state.coveredFrom != null) {
+                    boolean overlaps = !from.isAfter(state.watermark) && !state.coveredFrom.isAfter(to);
+                    if (overlaps) {
+                        from = Ordering.natural().min(from, state.coveredFrom);
+                        to = Ordering.natural().max(to, state.watermark);
+                    } else if (!to.isAfter(state.watermark)) {
+                        return;
+                    }
+                    if (from.equals(state.coveredFrom) && to.equals(state.watermark)) {
+                        return;
+                    }
+                }
+                append(new Line(key, Optional.empty(), Optional.of(to), Optional.of(from), Optional.empty()));
+            }
+        }
+    }
+
+    /**
+     * A line of the ledger. Watermarks written before their {@code coveredFrom} was recorded cover no
+     * range that can be relied on, so they are replaced by the next sync's.
+     */
+    private record Line(
+            String account,
+            Optional<Entry> entry,
+            Optional<Instant> watermark,
+            Optional<Instant> coveredFrom,
+            Optional<Backfill> backfill) {}
+
+    /** A backfill's checkpoint, or no checkpoint once the backfill has finished. */
+    private record Backfill(Optional<Instant> checkpoint) {}
+
+    private static final class AccountState {
+        private final Map<ActivityId, Entry> entries = new HashMap<>();
+        private Instant watermark;
+        private Instant coveredFrom;
+        private Instant backfillCheckpoint;
+    }
+
+    private void apply(Line line) {
+        AccountState state = accounts.computeIfAbsent(line.account(), key -> new AccountState());
+        line.entry().ifPresent(entry -> state.entries.put(entry.activity(), entry));
+        line.watermark().ifPresent(watermark -> {
+            state.watermark = watermark;
+            state.coveredFrom = line.coveredFrom().orElse(null);
+        });
+        line.backfill()
+                .ifPresent(backfill ->
+                        state.backfillCheckpoint = backfill.checkpoint().orElse(null));
+    }
+
+    private synchronized void append(Line line) {
+        try {
+            byte[] bytes = (mapper.writeValueAsString(line) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            apply(line);
+            lines++;
+            compactIfWasteful();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to sync ledger", e);
+        }
+    }
+
+    private int liveLines() {
+        return accounts.values().stream()
+                .mapToInt(state -> state.entries.size()
+                        + (state.watermark != null ? 1 : 0)
+                        + (state.backfillCheckpoint != null ? 1 : 0))
+                .sum();
+    }
+
+    /** Rewrites the ledger without superseded lines once they make up more than half of it. */
+    private void compactIfWasteful() throws IOException {
+        int live = liveLines();
+        if (lines < MIN_LINES_TO_COMPACT || lines < 2 * live) {
+            return;
+        }
+        Path compacted = file.resolveSibling(LEDGER + ".compacting");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, AccountState> account : accounts.entrySet()) {
+                for (Entry entry : account.getValue().entries.values()) {
+                    writer.write(mapper.writeValueAsString(new Line(
+                            account.getKey(),
+                            Optional.of(entry),
+                            Optional.empty(),
+                            Optional.empty(),
+                            Optional.empty())));
+                    writer.write('\n');
+                }
+                if (account.getValue().watermark != null) {
+                    writer.write(mapper.writeValueAsString(new Line(
+                            account.getKey(),
+                            Optional.empty(),
+                            Optional.of(account.getValue().watermark),
+                            Optional.ofNullable(account.getValue().coveredFrom),
+                            Optional.empty())));
+                    writer.write('\n');
+                }
+                if (account.getValue().backfillCheckpoint != null) {
+                    writer.write(mapper.writeValueAsString(new Line(
+                            account.getKey(),
+                            Optional.empty(),
+                            Optional.empty(),
+                            Optional.empty(),
+                            Optional.of(new Backfill(Optional.of(account.getValue().backfillCheckpoint))))));
+                    writer.write('\n');
+                }
+            }
+        }
+        try (FileChannel written = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            written.force(true);
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = openForAppend(file);
+        lines = live;
+    }
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
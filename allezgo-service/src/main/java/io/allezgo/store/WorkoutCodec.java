@@ -0,0 +1,200 @@
+package io.allezgo.store;
+
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import io.allezgo.units.Seconds;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes a {@link PerformanceSummary} as a compact record: a small header of summaries and
+ * segments followed by one compressed column per channel (see {@link Columns}).
+ *
+ * <p>Peloton reports most channels with a fixed number of decimal places, so a column whose values
+ * are all exact multiples of 1, 0.1, 0.01 or 0.001 is stored as scaled integer deltas, which are
+ * far smaller than XORed doubles. Other columns fall back to XOR encoding. Both round-trip exactly.
+ */
+final class WorkoutCodec {
+    private static final int MAGIC = 0x41475731; // AGW1
+    private static final int XOR_ENCODED = -1;
+    private static final int MAX_SCALE = 3;
+
+    private WorkoutCodec() {}
+
+    static byte[] encode(PerformanceSummary metrics) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeLong(metrics.duration().value());
+
+            out.writeInt(metrics.averages().size());
+            for (PerformanceSummary.Average average : metrics.averages()) {
+                writeString(out, average.name());
+                writeString(out, average.unit());
+                out.writeInt(average.value());
+            }
+            out.writeInt(metrics.summaries().size());
+            for (PerformanceSummary.Summary summary : metrics.summaries()) {
+                writeString(out, summary.name());
+                writeString(out, summary.unit());
+                out.writeInt(summary.value());
+            }
+            out.writeInt(metrics.segments().size());
+            for (Ride.Segment segment : metrics.segments()) {
+                writeString(out, segment.name());
+                out.writeLong(segment.startTime().value());
+                out.writeLong(segment.length().value());
+            }
+
+            int[] ticks = metrics.ticks();
+            long[] tickValues = new long[ticks.length];
+            for (int i = 0; i < ticks.length; i++) {
+                tickValues[i] = ticks[i];
+            }
+            BitWriter tickBits = new BitWriter(ticks.length / 4);
+            Columns.writeLongs(tickBits, tickValues, true);
+            out.writeInt(ticks.length);
+            writeBlob(out, tickBits.toByteArray());
+
+            out.writeInt(metrics.metrics().size());
+            for (PerformanceSummary.Metric metric : metrics.metrics()) {
+                writeString(out, metric.name());
+                writeString(out, metric.unit());
+                out.writeDouble(metric.average());
+                out.writeDouble(metric.max());
+                double[] values = metric.values();
+                int scale = scale(values);
+                BitWriter bits = new BitWriter(values.length);
+                if (scale == XOR_ENCODED) {
+                    Columns.writeDoubles(bits, values);
+                } else {
+                    Columns.writeLongs(bits, scaled(values, scale), false);
+                }
+                out.writeInt(values.length);
+                out.writeByte(scale);
+                writeBlob(out, bits.toByteArray());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode workout", e);
+        }
+    }
+
+    /** Decodes the record that starts at {@code buffer}'s position, leaving the buffer unmodified. */
+    static PerformanceSummary decode(ByteBuffer record) {
+        ByteBuffer in = record.duplicate();
+        if (in.getInt() != MAGIC) {
+            throw new IllegalStateException("Stored workout has an unknown format");
+        }
+        Seconds duration = Seconds.of(in.getLong());
+
+        int averageCount = in.getInt();
+        List<PerformanceSummary.Average> averages = new ArrayList<>(averageCount);
+        for (int i = 0; i < averageCount; i++) {
+            averages.add(new PerformanceSummary.Average(readString(in), readString(in), in.getInt()));
+        }
+        int summaryCount = in.getInt();
+        List<PerformanceSummary.Summary> summaries = new ArrayList<>(summaryCount);
+        for (int i = 0; i < summaryCount; i++) {
+            summaries.add(new PerformanceSummary.Summary(readString(in), readString(in), in.getInt()));
+        }
+        int segmentCount = in.getInt();
+        List<Ride.Segment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new Ride.Segment(readString(in), Seconds.of(in.getLong()), Seconds.of(in.getLong())));
+        }
+
+        int tickCount = in.getInt();
+        long[] tickValues = Columns.readLongs(Columns.reader(in, in.getInt()), tickCount, true);
+        int[] ticks = new int[tickCount];
+        for (int i = 0; i < tickCount; i++) {
+            ticks[i] = (int) tickValues[i];
+        }
+
+        int metricCount = in.getInt();
+        List<PerformanceSummary.Metric> metrics = new ArrayList<>(metricCount);
+        for (int i = 0; i < metricCount; i++) {
+            String name = readString(in);
+            String unit = readString(in);
+            double average = in.getDouble();
+            double max = in.getDouble();
+            int count = in.getInt();
+            int scale = in.get();
+            BitReader bits = Columns.reader(in, in.getInt());
+            double[] values = scale == XOR_ENCODED
+                    ? Columns.readDoubles(bits, count)
+                    : unscaled(Columns.readLongs(bits, count, false), scale);
+            metrics.add(new PerformanceSummary.Metric(name, unit, average, max, values));
+        }
+        return new PerformanceSummary(averages, duration, ticks, metrics, segments, summaries);
+    }
+
+    /**
+     * Returns the fewest decimal places that represent every value exactly, or {@link #XOR_ENCODED}
+     * if more than {@link #MAX_SCALE} would be needed.
+     */
+    private static int scale(double[] values) {
+        for (int scale = 0; scale <= MAX_SCALE; scale++) {
+            double factor = Math.pow(10, scale);
+            boolean exact = true;
+            for (int i = 0; i < values.length && exact; i++) {
+                double scaled = Math.rint(values[i] * factor);
+                exact = Math.abs(scaled) < 1L << 52 && scaled / factor == values[i];
+            }
+            if (exact) {
+                return scale;
+            }
+        }
+        return XOR_ENCODED;
+    }
+
+    private static long[] scaled(double[] values, int scale) {
+        double factor = Math.pow(10, scale);
+        long[] scaled = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaled[i] = (long) Math.rint(values[i] * factor);
+        }
+        return scaled;
+    }
+
+    private static double[] unscaled(long[] values, int scale) {
+        double factor = Math.pow(10, scale);
+        double[] unscaled = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            unscaled[i] = values[i] / factor;
+        }
+        return unscaled;
+    }
+
+    private static void writeBlob(DataOutputStream out, byte[] blob) throws IOException {
+        out.writeInt(blob.length);
+        out.write(blob);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,179 @@
+package io.allezgo.store;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.base.Splitter;
+import com.google.common.primitives.Bytes;
+import io.allezgo.adapters.peloton.ActivityId;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An embedded, append-only store of Peloton workouts keyed by {@link ActivityId}.
+ *
+ * <p>Metrics are compressed column by column (see {@link WorkoutCodec}) and appended to segment
+ * files, which are memory-mapped for reads so that loading a workout decodes straight from the page
+ * cache into the arrays of a {@link PerformanceSummary}; nothing but the workout being read is ever
+ * brought onto the heap. Workout metadata lives in a line-per-workout JSON index that is read into
+ * memory on open. A typical 45 minute ride takes around 10KB, so years of rides fit in a few MB.
+ *
+ * <p>Records are written and forced to disk before their index line, so a crash can at worst leave
+ * unreferenced bytes at the end of a segment. Storing a workout again replaces it.
+ */
+public final class WorkoutStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WorkoutStore.class);
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final String INDEX = "index.jsonl";
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final FileChannel index;
+    private final Map<ActivityId, IndexEntry> entries = new HashMap<>();
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+    private FileChannel segment;
+    private int segmentNumber;
+
+    private WorkoutStore(Path directory) throws IOException {
+        this.directory = directory;
+        Path indexFile = directory.resolve(INDEX);
+        byte[] existing = Files.exists(indexFile) ? Files.readAllBytes(indexFile) : new byte[0];
+        // a crash during a write can leave a final line without its newline, which is dropped
+        int complete = Bytes.lastIndexOf(existing, (byte) '\n') + 1;
+        for (String line :
+                Splitter.on('\n').omitEmptyStrings().split(new String(existing, 0, complete, StandardCharsets.UTF_8))) {
+            IndexEntry entry = mapper.readValue(line, IndexEntry.class);
+            entries.put(entry.activity().id(), entry);
+            segmentNumber = Math.max(segmentNumber, entry.segment());
+        }
+        this.index = FileChannel.open(
+                indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (complete < existing.length) {
+            log.warn("Discarding incomplete final line of workout store index");
+            index.truncate(complete);
+            index.force(false);
+        }
+        this.segment = openSegment(segmentNumber);
+    }
+
+    public static WorkoutStore open(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            return new WorkoutStore(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open workout store at " + directory, e);
+        }
+    }
+
+    public synchronized boolean contains(ActivityId id) {
+        return entries.containsKey(id);
+    }
+
+    public synchronized Set<ActivityId> ids() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    /** Returns the stored workout for {@code id}, decoded directly from its memory-mapped segment. */
+    public Optional<StoredWorkout> get(ActivityId id) {
+        IndexEntry entry;
+        ByteBuffer record;
+        synchronized (this) {
+            entry = entries.get(id);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            record = map(entry.segment(), entry.offset() + entry.length()).slice((int) entry.offset(), entry.length());
+        }
+        return Optional.of(new StoredWorkout(entry.activity(), entry.ride(), WorkoutCodec.decode(record)));
+    }
+
+    public synchronized void put(PelotonActivity activity, Ride ride, PerformanceSummary metrics) {
+        byte[] record = WorkoutCodec.encode(metrics);
+        try {
+            if (segment.size() > 0 && segment.size() + record.length > SEGMENT_SIZE) {
+                segment.close();
+                segmentNumber++;
+                segment = openSegment(segmentNumber);
+            }
+            long offset = segment.size();
+            writeFully(segment, ByteBuffer.wrap(record), offset);
+            segment.force(false);
+
+            IndexEntry entry = new IndexEntry(segmentNumber, offset, record.length, activity, ride);
+            byte[] line = (mapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            writeFully(index, ByteBuffer.wrap(line), index.size());
+            index.force(false);
+            entries.put(activity.id(), entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store workout " + activity.id(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.close();
+        index.close();
+        mapped.clear();
+    }
+
+    /** Returns segment {@code number} mapped to at least {@code required} bytes. */
+    private MappedByteBuffer map(int number, long required) {
+        while (mapped.size() <= number) {
+            mapped.add(null);
+        }
+        MappedByteBuffer buffer = mapped.get(number);
+        // the segment we're appending to outgrows its mapping, so remap it when needed
+        if (buffer == null || buffer.capacity() < required) {
+            try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to map workout store segment " + number, e);
+            }
+            mapped.set(number, buffer);
+        }
+        return buffer;
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("segment-%05d.dat", number));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    record IndexEntry(int segment, long offset, int length, PelotonActivity activity, Ride ride) {}
+}
@@ -0,0 +1,78 @@
+package io.allezgo.adapters.fit;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A minimal FIT decoder supporting exactly what {@link FitEncoder} produces, for tests. */
+final class FitDecoder {
+    private FitDecoder() {}
+
+    record Message(int globalNumber, Map<Integer, Long> fields) {
+        long get(int field) {
+            return Preconditions.checkNotNull(fields.get(field), "missing field %s", field);
+        }
+    }
+
+    private record Definition(int globalNumber, int[] fieldNumbers, int[] fieldSizes) {}
+
+    static List<Message> decode(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int headerSize = buf.get() & 0xFF;
+        Preconditions.checkState(headerSize == 14, "unexpected header size");
+        buf.get(); // protocol version
+        buf.getShort(); // profile version
+        int dataSize = buf.getInt();
+        byte[] magic = new byte[4];
+        buf.get(magic);
+        Preconditions.checkState(new String(magic).equals(".FIT"), "missing .FIT marker");
+        int headerCrc = buf.getShort() & 0xFFFF;
+        Preconditions.checkState(headerCrc == FitEncoder.crc(bytes, 0, 12), "bad header crc");
+        Preconditions.checkState(bytes.length == headerSize + dataSize + 2, "data size does not match file size");
+
+        Map<Integer, Definition> definitions = new HashMap<>();
+        List<Message> messages = new ArrayList<>();
+        while (buf.position() < headerSize + dataSize) {
+            int header = buf.get() & 0xFF;
+            Preconditions.checkState((header & 0x80) == 0, "compressed timestamp headers are not supported");
+            int localType = header & 0x0F;
+            if ((header & 0x40) != 0) {
+                buf.get(); // reserved
+                Preconditions.checkState(buf.get() == 0, "only little-endian messages are supported");
+                int globalNumber = buf.getShort() & 0xFFFF;
+                int numFields = buf.get() & 0xFF;
+                int[] numbers = new int[numFields];
+                int[] sizes = new int[numFields];
+                for (int i = 0; i < numFields; i++) {
+                    numbers[i] = buf.get() & 0xFF;
+                    sizes[i] = buf.get() & 0xFF;
+                    buf.get(); // base type
+                }
+                definitions.put(localType, new Definition(globalNumber, numbers, sizes));
+            } else {
+                Definition definition =
+                        Preconditions.checkNotNull(definitions.get(localType), "undefined local type %s", localType);
+                Map<Integer, Long> fields = new LinkedHashMap<>();
+                for (int i = 0; i < definition.fieldNumbers().length; i++) {
+                    long value =
+                            switch (definition.fieldSizes()[i]) {
+                                case 1 -> buf.get() & 0xFFL;
+                                case 2 -> buf.getShort() & 0xFFFFL;
+                                case 4 -> buf.getInt() & 0xFFFFFFFFL;
+                                default -> throw new IllegalStateException("unsupported field size");
+                            };
+                    fields.put(definition.fieldNumbers()[i], value);
+                }
+                messages.add(new Message(definition.globalNumber(), fields));
+            }
+        }
+        int fileCrc = buf.getShort() & 0xFFFF;
+        Preconditions.checkState(fileCrc == FitEncoder.crc(bytes, 0, headerSize + dataSize), "bad file crc");
+        return messages;
+    }
+}
@@ -0,0 +1,95 @@
+package io.allezgo.adapters.fit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import io.allezgo.adapters.tcx.TrainingCenterDatabase;
+import io.allezgo.units.Calories;
+import io.allezgo.units.Seconds;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+final class FitEncoderTests {
+    private static final Instant START = Instant.parse("2021-03-14T15:09:26Z");
+
+    @Test
+    public void testRoundTripsRecordsLapsAndSession() {
+        TrackpointBuffer trackpoints = trackpoints();
+        Fit fit = FitEncoder.encode(START, trackpoints);
+
+        List<FitDecoder.Message> messages = FitDecoder.decode(fit.value());
+        List<FitDecoder.Message> records = ofType(messages, 20);
+        List<FitDecoder.Message> laps = ofType(messages, 19);
+        List<FitDecoder.Message> sessions = ofType(messages, 18);
+
+        assertThat(ofType(messages, 0)).singleElement().satisfies(m -> assertThat(m.get(0))
+                .isEqualTo(4));
+        assertThat(ofType(messages, 34)).hasSize(1);
+        assertThat(records).hasSize(trackpoints.size());
+        assertThat(laps).hasSize(2);
+        assertThat(sessions).hasSize(1);
+
+        for (int i = 0; i < trackpoints.size(); i++) {
+            FitDecoder.Message record = records.get(i);
+            assertThat(record.get(253) + FitEncoder.FIT_EPOCH_OFFSET_SECONDS)
+                    .isEqualTo(trackpoints.timeMillis(i) / 1000);
+            assertThat(record.get(3)).isEqualTo(trackpoints.heartRate(i));
+            assertThat(record.get(4)).isEqualTo(trackpoints.cadence(i));
+            assertThat(record.get(5) / 100.0).isCloseTo(trackpoints.distance(i) * 1609.34, within(0.01));
+            assertThat(record.get(6) / 1000.0).isCloseTo(trackpoints.speed(i) * 0.44704, within(0.001));
+            assertThat(record.get(7)).isEqualTo((long) trackpoints.power(i));
+        }
+
+        FitDecoder.Message firstLap = laps.get(0);
+        assertThat(firstLap.get(2) + FitEncoder.FIT_EPOCH_OFFSET_SECONDS).isEqualTo(START.getEpochSecond());
+        assertThat(firstLap.get(7)).isEqualTo(60_000);
+        assertThat(firstLap.get(11)).isEqualTo(30);
+        assertThat(firstLap.get(16)).isEqualTo(trackpoints.lapMaximumHeartRate(0));
+        assertThat(firstLap.get(20)).isEqualTo((long) trackpoints.lapMaximumPower(0));
+
+        FitDecoder.Message session = sessions.get(0);
+        assertThat(session.get(7)).isEqualTo(120_000);
+        assertThat(session.get(11)).isEqualTo(75);
+        assertThat(session.get(26)).isEqualTo(2);
+        assertThat(session.get(9)).isEqualTo(laps.get(0).get(9) + laps.get(1).get(9));
+    }
+
+    @Test
+    public void testIsMuchSmallerThanTcx() {
+        TrackpointBuffer trackpoints = trackpoints();
+        Fit fit = FitEncoder.encode(START, trackpoints);
+        byte[] tcx = TrainingCenterDatabase.render("notes", START, trackpoints)
+                .value()
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertThat(fit.value().length * 10).isLessThan(tcx.length);
+    }
+
+    private static TrackpointBuffer trackpoints() {
+        TrackpointBuffer buffer = new TrackpointBuffer(120);
+        double distance = 0.0;
+        for (int lap = 0; lap < 2; lap++) {
+            buffer.startLap(START.plusSeconds(60L * lap), Seconds.of(60), Calories.of(30 + 15 * lap));
+            for (int s = 0; s < 60; s++) {
+                int tick = 60 * lap + s;
+                double speed = 15.0 + 5.0 * Math.sin(tick / 7.0);
+                distance += speed / 3600.0;
+                buffer.add(
+                        START.plusSeconds(tick).toEpochMilli(),
+                        120 + tick % 40,
+                        80 + tick % 15,
+                        speed,
+                        150.0 + 50.0 * Math.cos(tick / 5.0),
+                        distance);
+            }
+        }
+        return buffer;
+    }
+
+    private static List<FitDecoder.Message> ofType(List<FitDecoder.Message> messages, int globalNumber) {
+        return messages.stream().filter(m -> m.globalNumber() == globalNumber).toList();
+    }
+}
@@ -0,0 +1,65 @@
+package io.allezgo.adapters.garmin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.Test;
+
+final class GarminActivityCacheTests {
+    private static final Instant NOW = Instant.parse("2021-07-31T12:00:00Z");
+
+    private final List<GarminActivity> garmin = new ArrayList<>();
+    private final List<Integer> requestedPages = new ArrayList<>();
+    private final BiFunction<Integer, Integer, List<GarminActivity>> pages = (start, limit) -> {
+        requestedPages.add(start);
+        return List.copyOf(garmin.subList(Math.min(start, garmin.size()), Math.min(start + limit, garmin.size())));
+    };
+    private final GarminActivityCache cache = new GarminActivityCache(Duration.ofHours(1), 10);
+
+    @Test
+    public void testRefreshesOnlyTheHeadOfTheList() {
+        // one activity a day for 60 days, newest first
+        for (int day = 0; day < 60; day++) {
+            garmin.add(activity(day, NOW.minus(Duration.ofDays(day))));
+        }
+
+        List<GarminActivity> lastMonth = cache.since(pages, "rider", NOW.minus(Duration.ofDays(30)));
+        assertThat(lastMonth).hasSize(30).containsExactlyElementsOf(garmin.subList(0, 30));
+        assertThat(requestedPages).containsExactly(0, 20);
+
+        requestedPages.clear();
+        GarminActivity latest = activity(100, NOW.plus(Duration.ofHours(1)));
+        garmin.add(0, latest);
+        assertThat(cache.since(pages, "rider", NOW.minus(Duration.ofDays(30))))
+                .hasSize(31)
+                .startsWith(latest);
+        assertThat(requestedPages).containsExactly(0);
+    }
+
+    @Test
+    public void testAddsCreatedActivitiesAndExtendsWhenAskedForOlderOnes() {
+        for (int day = 0; day < 60; day++) {
+            garmin.add(activity(day, NOW.minus(Duration.ofDays(day))));
+        }
+        cache.since(pages, "rider", NOW.minus(Duration.ofDays(10)));
+
+        GarminActivity created = GarminActivity.created(GarminActivityId.of(200), "Ride", NOW.plusSeconds(60));
+        cache.add("rider", created);
+        garmin.add(0, created);
+        requestedPages.clear();
+
+        List<GarminActivity> lastMonth = cache.since(pages, "rider", NOW.minus(Duration.ofDays(30)));
+        assertThat(lastMonth).hasSize(31).startsWith(created);
+        assertThat(lastMonth.get(30).activityId()).isEqualTo(GarminActivityId.of(29));
+        // the head page stops at the created activity; the rest continues from the end of the listing
+        assertThat(requestedPages).containsExactly(0, 21);
+    }
+
+    private static GarminActivity activity(long id, Instant start) {
+        return GarminActivity.created(GarminActivityId.of(id), "Activity " + id, start);
+    }
+}
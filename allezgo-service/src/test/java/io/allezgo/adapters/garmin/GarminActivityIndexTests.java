@@ -0,0 +1,57 @@
+package io.allezgo.adapters.garmin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+final class GarminActivityIndexTests {
+    private static final Duration TOLERANCE = Duration.ofMinutes(2);
+
+    private final GarminActivity morning = activity(1, "2021-07-01 07:00:00");
+    private final GarminActivity noon = activity(2, "2021-07-01 12:00:00");
+    private final GarminActivity evening = activity(3, "2021-07-01 18:30:00");
+    // listed newest first, as Garmin does
+    private final GarminActivityIndex index = GarminActivityIndex.of(List.of(evening, noon, morning));
+
+    @Test
+    public void testFindsActivitiesStartingWithinTolerance() {
+        assertThat(index.nearest(Instant.parse("2021-07-01T12:00:00Z"), TOLERANCE))
+                .hasValue(noon);
+        assertThat(index.nearest(Instant.parse("2021-07-01T06:58:01Z"), TOLERANCE))
+                .hasValue(morning);
+        assertThat(index.nearest(Instant.parse("2021-07-01T18:31:59Z"), TOLERANCE))
+                .hasValue(evening);
+    }
+
+    @Test
+    public void testIgnoresActivitiesAtOrBeyondTolerance() {
+        assertThat(index.nearest(Instant.parse("2021-07-01T12:02:00Z"), TOLERANCE))
+                .isEmpty();
+        assertThat(index.nearest(Instant.parse("2021-07-01T06:00:00Z"), TOLERANCE))
+                .isEmpty();
+        assertThat(index.nearest(Instant.parse("2021-07-02T00:00:00Z"), TOLERANCE))
+                .isEmpty();
+        assertThat(GarminActivityIndex.of(List.of()).nearest(Instant.EPOCH, TOLERANCE))
+                .isEmpty();
+    }
+
+    @Test
+    public void testPrefersTheNearestOfTwoCandidates() {
+        GarminActivity close = activity(4, "2021-07-01 12:01:00");
+        GarminActivityIndex crowded = GarminActivityIndex.of(List.of(close, noon));
+
+        assertThat(crowded.nearest(Instant.parse("2021-07-01T12:00:50Z"), TOLERANCE))
+                .hasValue(close);
+        assertThat(crowded.nearest(Instant.parse("2021-07-01T12:00:20Z"), TOLERANCE))
+                .hasValue(noon);
+    }
+
+    private static GarminActivity activity(long id, String startTimeGmt) {
+        return new GarminActivity(
+                GarminActivityId.of(id), "Ride " + id, Optional.empty(), 1L, startTimeGmt, startTimeGmt);
+    }
+}
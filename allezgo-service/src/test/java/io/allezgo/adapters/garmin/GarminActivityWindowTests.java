@@ -0,0 +1,72 @@
+package io.allezgo.adapters.garmin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+final class GarminActivityWindowTests {
+    private static final Duration TOLERANCE = Duration.ofMinutes(2);
+
+    private final GarminActivity morning = activity(1, "2021-07-01 07:00:00");
+    private final GarminActivity close = activity(2, "2021-07-01 12:01:00");
+    private final GarminActivity noon = activity(3, "2021-07-01 12:00:00");
+    private final GarminActivity evening = activity(4, "2021-07-01 18:30:00");
+
+    @Test
+    public void testMatchesRidesNewestFirst() {
+        GarminActivityWindow window =
+                new GarminActivityWindow(List.of(evening, close, noon, morning).iterator(), TOLERANCE);
+
+        assertThat(window.nearest(Instant.parse("2021-07-01T20:00:00Z"))).isEmpty();
+        assertThat(window.nearest(Instant.parse("2021-07-01T18:31:59Z"))).hasValue(evening);
+        assertThat(window.nearest(Instant.parse("2021-07-01T12:00:50Z"))).hasValue(close);
+        assertThat(window.nearest(Instant.parse("2021-07-01T12:00:20Z"))).hasValue(noon);
+        assertThat(window.nearest(Instant.parse("2021-07-01T09:00:00Z"))).isEmpty();
+        assertThat(window.nearest(Instant.parse("2021-07-01T06:58:01Z"))).hasValue(morning);
+        assertThat(window.nearest(Instant.parse("2021-07-01T06:00:00Z"))).isEmpty();
+    }
+
+    @Test
+    public void testReadsTheListingOnlyAsFarAsNeeded() {
+        AtomicInteger read = new AtomicInteger();
+        Iterator<GarminActivity> activities = List.of(evening, noon, morning).iterator();
+        Iterator<GarminActivity> listing = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return activities.hasNext();
+            }
+
+            @Override
+            public GarminActivity next() {
+                read.incrementAndGet();
+                return activities.next();
+            }
+        };
+        GarminActivityWindow window = new GarminActivityWindow(listing, TOLERANCE);
+
+        assertThat(window.nearest(Instant.parse("2021-07-01T18:30:00Z"))).hasValue(evening);
+        // reading stops at the first activity too old to match
+        assertThat(read).hasValue(2);
+    }
+
+    @Test
+    public void testRejectsRidesOutOfOrder() {
+        GarminActivityWindow window = new GarminActivityWindow(List.of(evening).iterator(), TOLERANCE);
+        window.nearest(Instant.parse("2021-07-01T12:00:00Z"));
+
+        assertThatThrownBy(() -> window.nearest(Instant.parse("2021-07-01T18:30:00Z")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static GarminActivity activity(long id, String startTimeGmt) {
+        return new GarminActivity(
+                GarminActivityId.of(id), "Ride " + id, Optional.empty(), 1L, startTimeGmt, startTimeGmt);
+    }
+}
@@ -1,9 +1,13 @@
 package io.allezgo.adapters.garmin;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import com.markelliot.result.Result;
+import io.allezgo.client.HttpError;
 import io.allezgo.config.Configuration;
 import java.util.List;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 
 final class GarminClientTests {
@@ -43,4 +47,44 @@ final class GarminClientTests {
             }
         }
     }
+
+    @Test
+    public void duplicateUploadResolvesToExistingActivity() {
+        String body =
+                """
+                {"detailedImportResult": {"uploadId": 1, "successes": [], "failures": [{"internalId": 7123,
+                 "messages": [{"code": 202, "content": "Duplicate Activity."}]}]}}
+                """;
+        Result<GarminUpload, HttpError> upload =
+                GarminClient.uploadOf(Result.error(new HttpError(409, body, Optional.empty())));
+
+        assertThat(upload.orElseThrow()).isEqualTo(new GarminUpload(GarminActivityId.of(7123), true));
+    }
+
+    @Test
+    public void otherUploadFailuresRemainErrors() {
+        String body =
+                """
+                {"detailedImportResult": {"uploadId": 1, "successes": [], "failures": [{"internalId": null,
+                 "messages": [{"code": 201, "content": "Invalid file."}]}]}}
+                """;
+        Result<GarminUpload, HttpError> upload =
+                GarminClient.uploadOf(Result.error(new HttpError(409, body, Optional.empty())));
+
+        assertThat(upload.isError()).isTrue();
+        assertThat(upload.error().status()).isEqualTo(409);
+    }
+
+    @Test
+    public void uploadFailuresWithoutDetailsRemainErrors() {
+        for (String body : List.of(
+                "{\"message\": \"Conflict\"}",
+                "{\"detailedImportResult\": {\"uploadId\": 1, \"failures\": [{\"internalId\": 7123}]}}")) {
+            Result<GarminUpload, HttpError> upload =
+                    GarminClient.uploadOf(Result.error(new HttpError(409, body, Optional.empty())));
+
+            assertThat(upload.isError()).isTrue();
+            assertThat(upload.error().status()).isEqualTo(409);
+        }
+    }
 }
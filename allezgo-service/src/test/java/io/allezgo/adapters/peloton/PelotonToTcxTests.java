@@ -0,0 +1,124 @@
+package io.allezgo.adapters.peloton;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.allezgo.adapters.tcx.Tcx;
+import io.allezgo.adapters.tcx.TrackpointBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+final class PelotonToTcxTests {
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Test
+    public void testDeserializesPerformanceGraphIntoColumns() throws Exception {
+        PerformanceSummary metrics = read("performance_graph.json", PerformanceSummary.class);
+
+        assertThat(metrics.ticks()).hasSize(120).startsWith(1, 2, 3).endsWith(120);
+        assertThat(metrics.metric("Heart Rate").values()).hasSize(120).startsWith(96.0, 97.0);
+        assertThat(metrics.metric("Output").values()).hasSize(120);
+        assertThat(metrics.summary("Calories").value()).isEqualTo(23);
+        assertThat(metrics.segments()).hasSize(3);
+    }
+
+    @Test
+    public void testConvertsFixtureToGoldenTcx() throws Exception {
+        Tcx tcx = PelotonToTcx.convertToTcx(
+                read("workout.json", PelotonActivity.class),
+                read("ride.json", Ride.class),
+                read("performance_graph.json", PerformanceSummary.class));
+
+        assertThat(tcx.value()).isEqualTo(resource("ride.tcx"));
+    }
+
+    @Test
+    public void testDownsamplingKeepsLapTotalsAndDistance() throws Exception {
+        PelotonActivity activity = read("workout.json", PelotonActivity.class);
+        Ride ride = read("ride.json", Ride.class);
+        PerformanceSummary metrics = read("performance_graph.json", PerformanceSummary.class);
+
+        TrackpointBuffer full = PelotonToTcx.trackpoints(activity, ride, metrics, Sampling.FULL);
+        TrackpointBuffer downsampled =
+                PelotonToTcx.trackpoints(activity, ride, metrics, new Sampling(1, OptionalInt.of(24)));
+
+        assertThat(downsampled.size()).isLessThanOrEqualTo(24);
+        assertThat(downsampled.distance(downsampled.size() - 1)).isEqualTo(full.distance(full.size() - 1));
+        assertThat(downsampled.lapCount()).isEqualTo(full.lapCount());
+        for (int lap = 0; lap < full.lapCount(); lap++) {
+            assertThat(downsampled.timeMillis(downsampled.lapFirst(lap)))
+                    .isEqualTo(full.timeMillis(full.lapFirst(lap)));
+            assertThat(downsampled.timeMillis(downsampled.lapEnd(lap) - 1))
+                    .isEqualTo(full.timeMillis(full.lapEnd(lap) - 1));
+            assertThat(downsampled.lapTotalSeconds(lap)).isEqualTo(full.lapTotalSeconds(lap));
+            assertThat(downsampled.lapCalories(lap)).isEqualTo(full.lapCalories(lap));
+            assertThat(downsampled.lapDistanceMeters(lap)).isEqualTo(full.lapDistanceMeters(lap));
+            assertThat(downsampled.lapAveragePower(lap)).isEqualTo(full.lapAveragePower(lap));
+            assertThat(downsampled.lapAverageHeartRate(lap)).isEqualTo(full.lapAverageHeartRate(lap));
+            assertThat(downsampled.lapMaximumPower(lap)).isEqualTo(full.lapMaximumPower(lap));
+        }
+    }
+
+    @Test
+    public void testCoarseMetricsKeepLapBoundaries() throws Exception {
+        PelotonActivity activity = read("workout.json", PelotonActivity.class);
+        Ride ride = read("ride.json", Ride.class);
+        PerformanceSummary metrics = read("performance_graph.json", PerformanceSummary.class);
+
+        TrackpointBuffer full = PelotonToTcx.trackpoints(activity, ride, metrics, Sampling.FULL);
+        TrackpointBuffer coarse = PelotonToTcx.trackpoints(activity, ride, everyNth(metrics, 5), Sampling.FULL);
+
+        assertThat(coarse.size()).isEqualTo(120 / 5 + 1);
+        assertThat(coarse.lapCount()).isEqualTo(full.lapCount());
+        for (int lap = 0; lap < full.lapCount(); lap++) {
+            assertThat(coarse.lapStartMillis(lap)).isEqualTo(full.lapStartMillis(lap));
+            assertThat(coarse.lapTotalSeconds(lap)).isEqualTo(full.lapTotalSeconds(lap));
+            assertThat(coarse.lapCalories(lap)).isEqualTo(full.lapCalories(lap));
+        }
+        assertThat(coarse.timeMillis(coarse.size() - 1)).isEqualTo(full.timeMillis(full.size() - 1));
+    }
+
+    /** Keeps every {@code n}th sample, as Peloton does when asked for {@code every_n=n}. */
+    private static PerformanceSummary everyNth(PerformanceSummary metrics, int n) {
+        int[] ticks = IntStream.range(0, metrics.ticks().length / n)
+                .map(i -> metrics.ticks()[(i + 1) * n - 1])
+                .toArray();
+        List<PerformanceSummary.Metric> sampled = metrics.metrics().stream()
+                .map(m -> new PerformanceSummary.Metric(
+                        m.name(),
+                        m.unit(),
+                        m.average(),
+                        m.max(),
+                        IntStream.range(0, ticks.length)
+                                .mapToDouble(i -> m.values()[(i + 1) * n - 1])
+                                .toArray()))
+                .toList();
+        return new PerformanceSummary(
+                metrics.averages(), metrics.duration(), ticks, sampled, metrics.segments(), metrics.summaries());
+    }
+
+    static <T> T read(String name, Class<T> type) throws IOException {
+        try (InputStream in = PelotonToTcxTests.class.getResourceAsStream(name)) {
+            return mapper.readValue(in, type);
+        }
+    }
+
+    static String resource(String name) throws IOException {
+        try (InputStream in = PelotonToTcxTests.class.getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.allezgo.adapters.tcx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.units.Calories;
+import io.allezgo.units.Seconds;
+import org.junit.jupiter.api.Test;
+
+final class TrackpointBufferTests {
+    @Test
+    public void testRoundTripsLaps() {
+        TrackpointBuffer buffer = TrackpointBuffer.of(TrainingCenterDatabaseTests.laps());
+        assertThat(buffer.laps()).isEqualTo(TrainingCenterDatabaseTests.laps());
+        assertThat(buffer.lapCount()).isEqualTo(3);
+        assertThat(buffer.lapMaximumHeartRate(0)).isEqualTo(159);
+    }
+
+    @Test
+    public void testCanBeReusedAfterClear() {
+        TrackpointBuffer buffer = TrackpointBuffer.of(TrainingCenterDatabaseTests.laps());
+        buffer.clear();
+        buffer.startLap(TrainingCenterDatabaseTests.START, Seconds.of(1), Calories.of(1));
+        buffer.add(TrainingCenterDatabaseTests.START.toEpochMilli(), 100, 80, 20.0, 150.0, 0.01);
+        assertThat(buffer.size()).isEqualTo(1);
+        assertThat(buffer.lapCount()).isEqualTo(1);
+        assertThat(buffer.lapAveragePower(0)).isEqualTo(150.0);
+    }
+}
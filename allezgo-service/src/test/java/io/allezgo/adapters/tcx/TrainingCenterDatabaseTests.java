@@ -0,0 +1,65 @@
+package io.allezgo.adapters.tcx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.units.BeatsPerMinute;
+import io.allezgo.units.Calories;
+import io.allezgo.units.Miles;
+import io.allezgo.units.MilesPerHour;
+import io.allezgo.units.RevolutionsPerMinute;
+import io.allezgo.units.Seconds;
+import io.allezgo.units.Watts;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+final class TrainingCenterDatabaseTests {
+    static final Instant START = Instant.parse("2021-03-14T15:09:26Z");
+    static final String NOTES = "Test Ride with Tester\nA description of the ride.";
+
+    @Test
+    public void testRenderMatchesGoldenFile() throws Exception {
+        Tcx tcx = TrainingCenterDatabase.render(NOTES, START, laps());
+        assertThat(tcx.value()).isEqualTo(golden());
+    }
+
+    @Test
+    public void testNotesAreEscaped() {
+        Tcx tcx = TrainingCenterDatabase.render("Hip Hop & R<B", START, laps());
+        assertThat(tcx.value()).contains("<Notes>Hip Hop &amp; R&lt;B</Notes>");
+    }
+
+    static List<TrainingCenterDatabase.Lap> laps() {
+        List<TrainingCenterDatabase.Lap> laps = new ArrayList<>();
+        double distance = 0.0;
+        int tick = 0;
+        for (int lap = 0; lap < 3; lap++) {
+            Instant lapStart = START.plusSeconds(tick);
+            List<TrainingCenterDatabase.Trackpoint> trackpoints = new ArrayList<>();
+            int length = 20 + 7 * lap;
+            for (int i = 0; i < length; i++, tick++) {
+                double speed = 15.0 + 3.0 * Math.sin(tick / 5.0) + lap;
+                distance += speed / 3600.0;
+                trackpoints.add(new TrainingCenterDatabase.Trackpoint(
+                        START.plusSeconds(tick).plusMillis(tick % 3 == 0 ? 0 : 250L * (tick % 4)),
+                        BeatsPerMinute.of(110 + (tick * 7) % 50),
+                        RevolutionsPerMinute.of(70 + (tick * 3) % 30),
+                        MilesPerHour.of(speed),
+                        Watts.of(120.0 + 40.0 * Math.cos(tick / 3.0)),
+                        Miles.of(distance)));
+            }
+            laps.add(new TrainingCenterDatabase.Lap(
+                    lapStart, Seconds.of(length), Calories.of(40 + 11 * lap), trackpoints));
+        }
+        return laps;
+    }
+
+    static String golden() throws Exception {
+        try (InputStream in = TrainingCenterDatabaseTests.class.getResourceAsStream("golden.tcx")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.allezgo.analysis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.units.Seconds;
+import io.allezgo.units.Watts;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+final class MeanMaximalTests {
+    @Test
+    public void testPowerCurveMatchesExhaustiveSearch() {
+        Random random = new Random(42);
+        double[] watts = IntStream.range(0, 2000)
+                .mapToDouble(i -> Math.max(0, 180 + 60 * random.nextGaussian()))
+                .toArray();
+        int[] ticks = IntStream.rangeClosed(1, watts.length).toArray();
+
+        PowerCurve curve = MeanMaximal.powerCurve(ticks, watts);
+
+        assertThat(curve.duration(curve.size() - 1)).isLessThanOrEqualTo(watts.length);
+        for (int i = 0; i < curve.size(); i++) {
+            assertThat(curve.watts(i)).isCloseTo(exhaustive(watts, curve.duration(i)), within(1e-9));
+        }
+    }
+
+    @Test
+    public void testCoarseSamplesHoldSinceThePreviousTick() {
+        // one sample every 5 seconds is the same as five equal one second samples
+        int[] ticks = {5, 10, 15, 20};
+        double[] watts = {100, 300, 200, 100};
+
+        PowerCurve curve = MeanMaximal.powerCurve(ticks, watts);
+
+        assertThat(curve.best(Seconds.of(1))).hasValue(300.0);
+        assertThat(curve.best(Seconds.of(5))).hasValue(300.0);
+        assertThat(curve.best(Seconds.of(10))).hasValue(250.0);
+        assertThat(curve.best(Seconds.of(15))).hasValue(200.0);
+        assertThat(curve.best(Seconds.of(21))).isEmpty();
+    }
+
+    @Test
+    public void testBestEffortsAcrossWorkouts() {
+        double[] sprint =
+                IntStream.range(0, 600).mapToDouble(i -> i < 5 ? 900 : 150).toArray();
+        double[] steady = IntStream.range(0, 1500).mapToDouble(i -> 250).toArray();
+
+        PowerCurve best = MeanMaximal.powerCurve(IntStream.rangeClosed(1, 600).toArray(), sprint)
+                .max(MeanMaximal.powerCurve(IntStream.rangeClosed(1, 1500).toArray(), steady));
+        BestEfforts efforts = MeanMaximal.bestEfforts(best);
+
+        assertThat(efforts.efforts())
+                .containsExactly(
+                        new BestEfforts.Effort(Seconds.of(5), Watts.of(900.0)),
+                        new BestEfforts.Effort(Seconds.of(60), Watts.of(250.0)),
+                        new BestEfforts.Effort(Seconds.of(300), Watts.of(250.0)),
+                        new BestEfforts.Effort(Seconds.of(1200), Watts.of(250.0)));
+        assertThat(efforts.describe()).isEqualTo("Best efforts: 5s 900W, 1m 250W, 5m 250W, 20m 250W");
+        assertThat(MeanMaximal.bestEfforts(PowerCurve.EMPTY).efforts()).isEqualTo(List.of());
+    }
+
+    @Test
+    public void testAggregatedCurveIsThePointwiseBestOfEachWorkout() {
+        Random random = new Random(7);
+        List<PerformanceSummary> workouts = IntStream.range(0, 9)
+                .mapToObj(w -> workout(IntStream.range(0, 300 + 200 * w)
+                        .mapToDouble(i -> Math.max(0, 150 + 20 * w + 80 * random.nextGaussian()))
+                        .toArray()))
+                .toList();
+        ForkJoinPool pool = new ForkJoinPool(3);
+
+        PowerCurve aggregated;
+        try {
+            aggregated = MeanMaximal.powerCurve(workouts, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<PowerCurve> curves = workouts.stream().map(MeanMaximal::powerCurve).toList();
+        int longest = curves.stream().mapToInt(PowerCurve::size).max().getAsInt();
+        assertThat(aggregated.size()).isEqualTo(longest);
+        for (int i = 0; i < longest; i++) {
+            int point = i;
+            double best = curves.stream()
+                    .filter(curve -> point < curve.size())
+                    .mapToDouble(curve -> curve.watts(point))
+                    .max()
+                    .getAsDouble();
+            assertThat(aggregated.watts(i)).isEqualTo(best);
+        }
+        assertThat(MeanMaximal.powerCurve(List.of(), ForkJoinPool.commonPool())).isSameAs(PowerCurve.EMPTY);
+    }
+
+    private static PerformanceSummary workout(double[] watts) {
+        return new PerformanceSummary(
+                List.of(),
+                Seconds.of(watts.length),
+                IntStream.rangeClosed(1, watts.length).toArray(),
+                List.of(new PerformanceSummary.Metric("Output", "watts", 0, 0, watts)),
+                List.of(),
+                List.of());
+    }
+
+    private static double exhaustive(double[] watts, int duration) {
+        double best = 0.0;
+        for (int start = 0; start + duration <= watts.length; start++) {
+            double sum = 0.0;
+            for (int i = start; i < start + duration; i++) {
+                sum += watts[i];
+            }
+            best = Math.max(best, sum / duration);
+        }
+        return best;
+    }
+}
@@ -2,6 +2,12 @@ package io.allezgo.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.regex.Pattern;
 import org.junit.jupiter.api.Test;
 
@@ -19,9 +25,55 @@ final class FormsTests {
                         + "--012345--");
     }
 
+    @Test
+    public void testStreamedMultipartMatchesFormattedMultipart() {
+        String content = "<Trackpoint/>\n".repeat(20_000);
+        ChunkedOutputStream body = new ChunkedOutputStream();
+        body.write(content.getBytes(StandardCharsets.UTF_8), 0, content.length());
+
+        HttpRequest.BodyPublisher publisher =
+                Forms.multipartBodyPublisher("012345", "filename.tcx", body.toBodyPublisher());
+        byte[] expected = Forms.MultipartUpload.format("filename.tcx", content, "012345")
+                .content()
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertThat(publisher.contentLength()).isEqualTo(expected.length);
+        assertThat(drain(publisher)).isEqualTo(expected);
+    }
+
     @Test
     public void testBoundaryGeneration() {
         Forms.MultipartUpload up = Forms.MultipartUpload.of("filename.tcx", "content");
         assertThat(up.boundary()).matches(Pattern.compile("----[0-9]+"));
     }
+
+    private static byte[] drain(HttpRequest.BodyPublisher publisher) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return out.toByteArray();
+    }
 }
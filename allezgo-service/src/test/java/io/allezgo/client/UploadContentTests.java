@@ -0,0 +1,34 @@
+package io.allezgo.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.Test;
+
+final class UploadContentTests {
+    @Test
+    public void testZippedContentUnzipsToOriginal() throws IOException {
+        byte[] tcx;
+        try (InputStream in = UploadContentTests.class.getResourceAsStream("/io/allezgo/adapters/peloton/ride.tcx")) {
+            tcx = in.readAllBytes();
+        }
+        UploadContent content = out -> out.write(tcx);
+
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        content.zipped("activity.tcx").writeTo(zipped);
+
+        // TCX is highly repetitive markup so deflate shrinks it dramatically
+        assertThat(zipped.size()).isLessThan(tcx.length / 10);
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipped.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("activity.tcx");
+            assertThat(zip.readAllBytes()).isEqualTo(tcx);
+            assertThat(zip.getNextEntry()).isNull();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.allezgo.convert;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class BulkConverterTests {
+    private static final List<String> FILES = List.of("workout.json", "ride.json", "performance_graph.json");
+
+    @TempDir
+    Path input;
+
+    @TempDir
+    Path output;
+
+    @Test
+    public void testConvertsEachWorkoutAndCountsFailures() throws IOException {
+        Path workout = Files.createDirectory(input.resolve("workout"));
+        for (String file : FILES) {
+            copyFixture(file, workout.resolve(file));
+        }
+        Path broken = Files.createDirectory(input.resolve("broken"));
+        Files.writeString(broken.resolve("workout.json"), "{");
+
+        BulkConverter.Report report = new BulkConverter(BulkConverter.Format.TCX, 2).convert(input, output);
+
+        assertThat(report.converted()).isEqualTo(1);
+        assertThat(report.failed()).isEqualTo(1);
+        assertThat(report.inputBytes()).isPositive();
+        try (Stream<Path> files = Files.list(output)) {
+            Path tcx =
+                    files.filter(p -> p.toString().endsWith(".tcx")).findFirst().orElseThrow();
+            assertThat(Files.readString(tcx)).isEqualTo(fixture("ride.tcx"));
+            assertThat(report.outputBytes()).isEqualTo(Files.size(tcx));
+        }
+    }
+
+    private static void copyFixture(String name, Path destination) throws IOException {
+        try (InputStream in = resource(name)) {
+            Files.copy(in, destination);
+        }
+    }
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = resource(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream resource(String name) {
+        return BulkConverterTests.class.getResourceAsStream("/io/allezgo/adapters/peloton/" + name);
+    }
+}
@@ -0,0 +1,41 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.endpoints.PrioritizedExecutor.Priority;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+final class PrioritizedExecutorTests {
+    @Test
+    public void interactiveTasksRunAheadOfQueuedBackgroundTasks() throws Exception {
+        PrioritizedExecutor executor = new PrioritizedExecutor("test", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> ran = new CopyOnWriteArrayList<>();
+
+        // occupy the only thread so that everything after it queues
+        CompletableFuture<Void> blocker = CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                },
+                executor.at(Priority.BACKGROUND));
+        CompletableFuture<Void> background1 =
+                CompletableFuture.runAsync(() -> ran.add("background-1"), executor.at(Priority.BACKGROUND));
+        CompletableFuture<Void> background2 =
+                CompletableFuture.runAsync(() -> ran.add("background-2"), executor.at(Priority.BACKGROUND));
+        CompletableFuture<Void> interactive =
+                CompletableFuture.runAsync(() -> ran.add("interactive"), executor.at(Priority.INTERACTIVE));
+        release.countDown();
+
+        CompletableFuture.allOf(blocker, background1, background2, interactive).get(10, TimeUnit.SECONDS);
+        assertThat(ran).containsExactly("interactive", "background-1", "background-2");
+    }
+}
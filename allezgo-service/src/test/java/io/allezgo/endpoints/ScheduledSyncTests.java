@@ -0,0 +1,51 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.config.Configuration;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+final class ScheduledSyncTests {
+    @Test
+    public void syncsEachAccountInItsSlotAndBacksOffFailingAccounts() throws Exception {
+        List<String> synced = new CopyOnWriteArrayList<>();
+        CountDownLatch twoRounds = new CountDownLatch(4);
+        ScheduledSync scheduled = new ScheduledSync(
+                request -> {
+                    synced.add(request.pelotonEmail());
+                    if (request.pelotonEmail().equals("failing@example.com")) {
+                        return new Response(null, "Unable to login to Peloton with the provided credentials");
+                    }
+                    twoRounds.countDown();
+                    return new Response(List.of(), null);
+                },
+                List.of(account("a@example.com"), account("failing@example.com"), account("b@example.com")),
+                Executors.newSingleThreadScheduledExecutor(),
+                Duration.ofMillis(300));
+
+        scheduled.start();
+        try {
+            assertThat(twoRounds.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            scheduled.close();
+        }
+
+        assertThat(synced.subList(0, 3)).containsExactly("a@example.com", "failing@example.com", "b@example.com");
+        // the failing account sits out the period after its failure
+        assertThat(Collections.frequency(synced, "failing@example.com")).isEqualTo(1);
+    }
+
+    private static Configuration account(String email) {
+        return new Configuration(
+                new Configuration.Peloton(email, "password"),
+                new Configuration.Garmin("garmin@example.com", "password", "Peloton"));
+    }
+}
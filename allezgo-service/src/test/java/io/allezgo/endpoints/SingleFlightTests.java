@@ -0,0 +1,110 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+final class SingleFlightTests {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final MutableClock clock = new MutableClock();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallsShareOneResult() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>(clock, Duration.ofMinutes(2), value -> true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> flight.call("key", () -> {
+                    started.countDown();
+                    await(release);
+                    return "result-" + calls.incrementAndGet();
+                }),
+                executor);
+        await(started);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> flight.call("key", () -> "result-" + calls.incrementAndGet()), executor);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("result-1");
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo("result-1");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    public void resultsAreKeptUntilTheTtlPasses() {
+        SingleFlight<String> flight = new SingleFlight<>(clock, Duration.ofMinutes(2), value -> true);
+
+        assertThat(flight.call("key", () -> "result-" + calls.incrementAndGet()))
+                .isEqualTo("result-1");
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(flight.call("key", () -> "result-" + calls.incrementAndGet()))
+                .isEqualTo("result-1");
+        assertThat(flight.call("other", () -> "result-" + calls.incrementAndGet()))
+                .isEqualTo("result-2");
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(flight.call("key", () -> "result-" + calls.incrementAndGet()))
+                .isEqualTo("result-3");
+    }
+
+    @Test
+    public void failuresAndUnkeptResultsAreNotRemembered() {
+        SingleFlight<String> flight = new SingleFlight<>(clock, Duration.ofMinutes(2), value -> !value.isEmpty());
+
+        assertThatThrownBy(() -> flight.call("key", () -> {
+                    throw new IllegalStateException("failed");
+                }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(flight.call("key", () -> "")).isEmpty();
+        assertThat(flight.call("key", () -> "result")).isEqualTo("result");
+    }
+
+    @Test
+    public void errorsReleaseCallersWaitingOnTheFlight() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>(clock, Duration.ofMinutes(2), value -> true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> flight.call("key", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new AssertionError("failed");
+                }),
+                executor);
+        await(started);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> flight.call("key", () -> "result-" + calls.incrementAndGet()), executor);
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        // the second call either shares the failure or, if it came after, does the work itself
+        assertThat(second.handle((value, error) -> true).get(10, TimeUnit.SECONDS))
+                .isTrue();
+        assertThat(flight.call("key", () -> "result-" + calls.incrementAndGet()))
+                .isEqualTo("result-1");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
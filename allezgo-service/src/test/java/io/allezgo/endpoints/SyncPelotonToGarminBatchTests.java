@@ -0,0 +1,74 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import io.allezgo.endpoints.SyncPelotonToGarminBatch.BatchRequest;
+import io.allezgo.server.StreamingResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+final class SyncPelotonToGarminBatchTests {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamsOneLinePerAccount() throws IOException {
+        SyncPelotonToGarminBatch batch = new SyncPelotonToGarminBatch(
+                request -> {
+                    if (request.pelotonEmail().equals("failing@example.com")) {
+                        throw new IllegalStateException("upload failed");
+                    }
+                    return new Response(List.of(), null);
+                },
+                executor);
+
+        StreamingResponse response =
+                batch.call(new BatchRequest(List.of(request("a@example.com"), request("failing@example.com"))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.body().writeTo(out);
+
+        assertThat(response.contentType()).isEqualTo("application/x-ndjson");
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n"))
+                .containsExactly(
+                        "{\"index\":0,\"pelotonEmail\":\"a@example.com\",\"garminEmail\":\"garmin@example.com\","
+                                + "\"result\":[]}",
+                        "{\"index\":1,\"pelotonEmail\":\"failing@example.com\",\"garminEmail\":\"garmin@example.com\","
+                                + "\"error\":\"Error during sync\"}");
+    }
+
+    @Test
+    public void testRejectsEmptyBatches() {
+        assertThat(new SyncPelotonToGarminBatch(request -> new Response(List.of(), null), executor)
+                        .call(new BatchRequest(List.of()))
+                        .status())
+                .isEqualTo(400);
+    }
+
+    private static Request request(String pelotonEmail) {
+        return new Request(
+                pelotonEmail,
+                "password",
+                "garmin@example.com",
+                "password",
+                "Peloton",
+                7,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty());
+    }
+}
@@ -0,0 +1,180 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.endpoints.SyncPelotonToGarmin.Outcome;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Response;
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+import io.allezgo.endpoints.SyncPelotonToGarminJobs.JobResponse;
+import io.allezgo.endpoints.SyncPelotonToGarminJobs.JobStatus;
+import io.allezgo.endpoints.SyncPelotonToGarminJobs.State;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+final class SyncPelotonToGarminJobsTests {
+    private static final Request REQUEST = new Request(
+            "peloton@example.com",
+            "password",
+            "garmin@example.com",
+            "password",
+            "Peloton",
+            7,
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final MutableClock clock = new MutableClock();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch reported = new CountDownLatch(1);
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReportsProgressThenResultsUntilRetentionExpires() throws InterruptedException {
+        SyncRecord matched = record(false);
+        SyncRecord uploaded = record(true);
+        SyncRecord failed = new SyncRecord(
+                LocalDate.of(2021, 7, 1),
+                "Ride",
+                "",
+                "peloton",
+                null,
+                false,
+                Optional.empty(),
+                Outcome.FAILED,
+                Optional.of("upload failed"));
+        SyncPelotonToGarminJobs jobs = new SyncPelotonToGarminJobs(
+                (request, progress) -> {
+                    progress.scanned();
+                    progress.scanned();
+                    progress.synced(uploaded);
+                    progress.failed(failed);
+                    reported.countDown();
+                    await(release);
+                    progress.synced(matched);
+                    return new Response(List.of(matched, uploaded, failed), null);
+                },
+                executor,
+                clock,
+                Duration.ofMinutes(10));
+
+        String jobId = jobs.start(REQUEST).result().jobId();
+        await(reported);
+        JobStatus running = jobs.status(jobId).result();
+        assertThat(running.state()).isEqualTo(State.RUNNING);
+        assertThat(running.scanned()).isEqualTo(2);
+        assertThat(running.uploaded()).isEqualTo(1);
+        assertThat(running.failed()).isEqualTo(1);
+        assertThat(running.result()).containsExactly(uploaded, failed);
+
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        JobStatus finished = jobs.status(jobId).result();
+        assertThat(finished.state()).isEqualTo(State.SUCCEEDED);
+        assertThat(finished.matched()).isEqualTo(1);
+        assertThat(finished.result()).containsExactly(matched, uploaded, failed);
+
+        clock.advance(Duration.ofMinutes(11));
+        JobResponse expired = jobs.status(jobId);
+        assertThat(expired.result()).isNull();
+        assertThat(expired.error()).startsWith("No sync job");
+    }
+
+    @Test
+    public void testRejectsInvalidRequestsWithoutStartingAJob() {
+        SyncPelotonToGarminJobs jobs = new SyncPelotonToGarminJobs(
+                (request, progress) -> {
+                    throw new AssertionError("should not run");
+                },
+                executor,
+                clock,
+                Duration.ofMinutes(10));
+
+        JobResponse response = jobs.start(new Request(
+                "",
+                "",
+                "",
+                "",
+                "",
+                7,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()));
+
+        assertThat(response.result()).isNull();
+        assertThat(response.error()).startsWith("Some required fields were missing or empty");
+    }
+
+    @Test
+    public void testTurnsAwayJobsOnceTheQueueIsFull() throws InterruptedException {
+        ExecutorService bounded = SyncPelotonToGarminJobs.executor(1, 1);
+        try {
+            SyncPelotonToGarminJobs jobs = new SyncPelotonToGarminJobs(
+                    (request, progress) -> {
+                        reported.countDown();
+                        await(release);
+                        return new Response(List.of(), null);
+                    },
+                    bounded,
+                    clock,
+                    Duration.ofMinutes(10));
+
+            String running = jobs.start(REQUEST).result().jobId();
+            await(reported);
+            String queued = jobs.start(REQUEST).result().jobId();
+            JobResponse rejected = jobs.start(REQUEST);
+
+            assertThat(rejected.result()).isNull();
+            assertThat(rejected.error()).isEqualTo("Unable to start sync, please try again later");
+            assertThat(jobs.status(running).result().state()).isEqualTo(State.RUNNING);
+            assertThat(jobs.status(queued).result().state()).isEqualTo(State.RUNNING);
+
+            release.countDown();
+            bounded.shutdown();
+            assertThat(bounded.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(jobs.status(running).result().state()).isEqualTo(State.SUCCEEDED);
+            assertThat(jobs.status(queued).result().state()).isEqualTo(State.SUCCEEDED);
+        } finally {
+            bounded.shutdownNow();
+        }
+    }
+
+    private static SyncRecord record(boolean wasCreated) {
+        return new SyncRecord(
+                LocalDate.of(2021, 7, 1),
+                "Ride",
+                "",
+                "peloton",
+                "garmin",
+                wasCreated,
+                Optional.empty(),
+                wasCreated ? Outcome.UPLOADED : Outcome.MATCHED,
+                Optional.empty());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
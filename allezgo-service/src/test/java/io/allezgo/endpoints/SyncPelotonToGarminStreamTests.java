@@ -0,0 +1,70 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.endpoints.SyncPelotonToGarmin.Outcome;
+import io.allezgo.endpoints.SyncPelotonToGarmin.Request;
+import io.allezgo.endpoints.SyncPelotonToGarmin.SyncRecord;
+import io.allezgo.server.StreamingResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+final class SyncPelotonToGarminStreamTests {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamsRecordsCompletedBeforeAFailure() throws IOException {
+        SyncRecord record = new SyncRecord(
+                LocalDate.of(2021, 7, 1),
+                "Ride",
+                "",
+                "peloton",
+                "garmin",
+                true,
+                Optional.empty(),
+                Outcome.UPLOADED,
+                Optional.empty());
+        SyncPelotonToGarminStream<Request> stream = new SyncPelotonToGarminStream<>(
+                SyncPelotonToGarmin::validate,
+                (request, progress) -> {
+                    progress.synced(record);
+                    throw new IllegalStateException("upload failed");
+                },
+                executor);
+
+        StreamingResponse response = stream.call(new Request(
+                "peloton@example.com",
+                "password",
+                "garmin@example.com",
+                "password",
+                "Peloton",
+                7,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.body().writeTo(out);
+
+        assertThat(response.contentType()).isEqualTo("application/x-ndjson");
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n"))
+                .containsExactly(
+                        "{\"record\":{\"activityDate\":\"2021-07-01\",\"title\":\"Ride\",\"description\":\"\","
+                                + "\"pelotonLink\":\"peloton\",\"garminLink\":\"garmin\",\"wasCreated\":true,"
+                                + "\"outcome\":\"uploaded\"}}",
+                        "{\"error\":\"Error during sync\"}");
+    }
+}
@@ -0,0 +1,51 @@
+package io.allezgo.endpoints;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.allezgo.client.HttpError;
+import io.allezgo.client.HttpErrorException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+final class SyncPelotonToGarminTests {
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    public void testRejectedRequestsAreAttemptedOnce() {
+        for (int status : new int[] {400, 401, 403, 404}) {
+            attempts.set(0);
+            assertThatThrownBy(() -> SyncPelotonToGarmin.withRetries(new AtomicBoolean(), () -> {
+                        attempts.incrementAndGet();
+                        throw new HttpError(status, "", Optional.empty()).toException();
+                    }))
+                    .isInstanceOf(HttpErrorException.class);
+            assertThat(attempts).hasValue(1);
+        }
+    }
+
+    @Test
+    public void testFailedConversionsAreAttemptedOnce() {
+        assertThatThrownBy(() -> SyncPelotonToGarmin.withRetries(new AtomicBoolean(), () -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("Performance summary is missing metric 'Output'");
+                }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() {
+        String result = SyncPelotonToGarmin.withRetries(new AtomicBoolean(), () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new HttpError(503, "", Optional.empty()).toException();
+            }
+            return "synced";
+        });
+
+        assertThat(result).isEqualTo("synced");
+        assertThat(attempts).hasValue(2);
+    }
+}
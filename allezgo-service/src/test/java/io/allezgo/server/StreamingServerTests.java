@@ -0,0 +1,85 @@
+package io.allezgo.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+final class StreamingServerTests {
+    private final CountDownLatch firstChunkRead = new CountDownLatch(1);
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StreamingServer server;
+
+    record Request(String name) {}
+
+    @BeforeEach
+    public void before() {
+        server = StreamingServer.builder()
+                .port(0)
+                .allowOrigin("https://allezgo.io")
+                .put(
+                        "/stream",
+                        Request.class,
+                        request -> StreamingResponse.ok("text/plain", out -> {
+                            out.write(("hello " + request.name() + "\n").getBytes(StandardCharsets.UTF_8));
+                            out.flush();
+                            try {
+                                // the rest is only written once the client has read the first part
+                                assertThat(firstChunkRead.await(10, TimeUnit.SECONDS))
+                                        .isTrue();
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                            out.write("goodbye\n".getBytes(StandardCharsets.UTF_8));
+                        }))
+                .start();
+    }
+
+    @AfterEach
+    public void after() {
+        server.close();
+    }
+
+    @Test
+    public void testStreamsBodyBeforeItIsComplete() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(
+                request("{\"name\": \"allez\"}")
+                        .header("Origin", "https://allezgo.io")
+                        .build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Access-Control-Allow-Origin")).hasValue("https://allezgo.io");
+        try (InputStream body = response.body()) {
+            assertThat(new String(body.readNBytes(12), StandardCharsets.UTF_8)).isEqualTo("hello allez\n");
+            firstChunkRead.countDown();
+            assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("goodbye\n");
+        }
+    }
+
+    @Test
+    public void testRejectsMalformedRequests() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(
+                request("{").header("Origin", "https://example.com").build(), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.headers().firstValue("Access-Control-Allow-Origin")).isEmpty();
+        assertThat(response.body()).startsWith("{\"error\":\"Unable to read request");
+    }
+
+    private HttpRequest.Builder request(String body) {
+        return HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + server.address().getPort() + "/stream"))
+                .PUT(HttpRequest.BodyPublishers.ofString(body));
+    }
+}
@@ -0,0 +1,140 @@
+package io.allezgo.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.allezgo.adapters.garmin.GarminActivityId;
+import io.allezgo.adapters.peloton.ActivityId;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class SyncLedgerTests {
+    private static final Instant START = Instant.parse("2021-07-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEntriesAndWatermarksSurviveReopening() throws IOException {
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            account.record(entry(1, START));
+            account.record(entry(2, START.plusSeconds(3600)));
+            account.advanceWatermark(START.minusSeconds(3600), START.plusSeconds(3600));
+            account.advanceWatermark(START.minusSeconds(3600), START);
+        }
+
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("Rider@Example.com", "rider@example.com");
+            assertThat(account.watermark(START.minusSeconds(3600))).hasValue(START.plusSeconds(3600));
+            assertThat(account.get(ActivityId.of("1"))).hasValue(entry(1, START));
+            assertThat(account.since(START.minusSeconds(1)))
+                    .containsExactly(entry(2, START.plusSeconds(3600)), entry(1, START));
+            assertThat(account.since(START)).containsExactly(entry(2, START.plusSeconds(3600)));
+
+            SyncLedger.Account other = ledger.account("rider@example.com", "someone@example.com");
+            assertThat(other.watermark(START.minusSeconds(3600))).isEmpty();
+            assertThat(other.get(ActivityId.of("1"))).isEmpty();
+        }
+    }
+
+    @Test
+    public void testCompactsSupersededLines() throws IOException {
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            account.record(entry(1, START));
+            for (int i = 1; i <= 2000; i++) {
+                account.advanceWatermark(START.plusSeconds(i - 1), START.plusSeconds(i));
+            }
+        }
+
+        assertThat(Files.readAllLines(directory.resolve("ledger.jsonl")).size()).isLessThan(1000);
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            assertThat(account.watermark(START)).hasValue(START.plusSeconds(2000));
+            assertThat(account.get(ActivityId.of("1"))).hasValue(entry(1, START));
+        }
+    }
+
+    @Test
+    public void testWatermarkOnlyCoversTheRangeSynchronized() throws IOException {
+        Instant now = START.plus(Duration.ofDays(30));
+        Instant dayAgo = now.minus(Duration.ofDays(1));
+        Instant monthAgo = now.minus(Duration.ofDays(30));
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            // a sync of the last day
+            account.advanceWatermark(dayAgo, now.minusSeconds(60));
+
+            assertThat(account.watermark(dayAgo)).hasValue(now.minusSeconds(60));
+            // a later sync of the last month has to list every ride older than a day
+            assertThat(account.watermark(monthAgo)).isEmpty();
+            account.advanceWatermark(monthAgo, now);
+            // and after that the whole month is covered, as is any shorter sync
+            assertThat(account.watermark(monthAgo)).hasValue(now);
+            assertThat(account.watermark(dayAgo)).hasValue(now);
+
+            // a range that doesn't meet the one covered replaces it only if newer
+            account.advanceWatermark(now.plusSeconds(60), now.plusSeconds(120));
+            assertThat(account.watermark(monthAgo)).isEmpty();
+            assertThat(account.watermark(now.plusSeconds(60))).hasValue(now.plusSeconds(120));
+            account.advanceWatermark(monthAgo, dayAgo);
+            assertThat(account.watermark(now.plusSeconds(60))).hasValue(now.plusSeconds(120));
+        }
+    }
+
+    @Test
+    public void testDiscardsTornFinalLineBeforeAppending() throws IOException {
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            ledger.account("rider@example.com", "rider@example.com").record(entry(1, START));
+        }
+        Files.writeString(directory.resolve("ledger.jsonl"), "{\"account\":\"ab", StandardOpenOption.APPEND);
+
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            ledger.account("rider@example.com", "rider@example.com").record(entry(2, START.plusSeconds(3600)));
+        }
+
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            assertThat(account.since(START.minusSeconds(1)))
+                    .containsExactly(entry(2, START.plusSeconds(3600)), entry(1, START));
+        }
+    }
+
+    @Test
+    public void testBackfillCheckpointsSurviveReopeningUntilFinished() throws IOException {
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            account.checkpointBackfill(START.plusSeconds(3600));
+            account.checkpointBackfill(START);
+        }
+
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            SyncLedger.Account account = ledger.account("rider@example.com", "rider@example.com");
+            assertThat(account.backfillCheckpoint()).hasValue(START);
+            account.finishBackfill();
+            assertThat(account.backfillCheckpoint()).isEmpty();
+        }
+
+        try (SyncLedger ledger = SyncLedger.open(directory)) {
+            assertThat(ledger.account("rider@example.com", "rider@example.com").backfillCheckpoint())
+                    .isEmpty();
+        }
+    }
+
+    private static SyncLedger.Entry entry(long id, Instant start) {
+        return new SyncLedger.Entry(
+                ActivityId.of(String.valueOf(id)),
+                GarminActivityId.of(id + 100),
+                start,
+                LocalDate.of(2021, 7, 1),
+                "Ride " + id,
+                "");
+    }
+}
@@ -0,0 +1,126 @@
+package io.allezgo.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.allezgo.adapters.peloton.ActivityId;
+import io.allezgo.adapters.peloton.PelotonActivity;
+import io.allezgo.adapters.peloton.PelotonToTcx;
+import io.allezgo.adapters.peloton.PerformanceSummary;
+import io.allezgo.adapters.peloton.Ride;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class WorkoutStoreTests {
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new GuavaModule())
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testStoredWorkoutsConvertIdenticallyAfterReopening() throws IOException {
+        PelotonActivity activity = read("workout.json", PelotonActivity.class);
+        Ride ride = read("ride.json", Ride.class);
+        PerformanceSummary metrics = read("performance_graph.json", PerformanceSummary.class);
+
+        try (WorkoutStore store = WorkoutStore.open(directory)) {
+            store.put(activity, ride, metrics);
+            assertThat(store.contains(activity.id())).isTrue();
+        }
+
+        try (WorkoutStore store = WorkoutStore.open(directory)) {
+            StoredWorkout stored = store.get(activity.id()).orElseThrow();
+            assertThat(stored.activity()).isEqualTo(activity);
+            assertThat(stored.ride()).isEqualTo(ride);
+            assertThat(PelotonToTcx.convertToTcx(stored.activity(), stored.ride(), stored.metrics()))
+                    .isEqualTo(PelotonToTcx.convertToTcx(activity, ride, metrics));
+            assertThat(store.get(ActivityId.of("missing"))).isEmpty();
+        }
+    }
+
+    @Test
+    public void testDiscardsTornFinalIndexLineBeforeAppending() throws IOException {
+        PelotonActivity activity = read("workout.json", PelotonActivity.class);
+        Ride ride = read("ride.json", Ride.class);
+        PerformanceSummary metrics = read("performance_graph.json", PerformanceSummary.class);
+        ObjectNode copy = mapper.valueToTree(activity);
+        copy.put("id", "another");
+        PelotonActivity another = mapper.treeToValue(copy, PelotonActivity.class);
+
+        try (WorkoutStore store = WorkoutStore.open(directory)) {
+            store.put(activity, ride, metrics);
+        }
+        Files.writeString(directory.resolve("index.jsonl"), "{\"segment\":0,\"off", StandardOpenOption.APPEND);
+
+        try (WorkoutStore store = WorkoutStore.open(directory)) {
+            store.put(another, ride, metrics);
+        }
+
+        try (WorkoutStore store = WorkoutStore.open(directory)) {
+            assertThat(store.ids()).containsExactlyInAnyOrder(activity.id(), another.id());
+            assertThat(store.get(another.id()).orElseThrow().activity()).isEqualTo(another);
+        }
+    }
+
+    @Test
+    public void testColumnsRoundTripExactlyAndCompress() {
+        Random random = new Random(7);
+        int n = 2700;
+        int[] ticks = new int[n];
+        double[] heartRate = new double[n];
+        double[] output = new double[n];
+        double[] noise = new double[n];
+        for (int i = 0; i < n; i++) {
+            ticks[i] = i + 1;
+            heartRate[i] = 140 + (i / 60) % 20;
+            output[i] = Math.round((180 + 30 * random.nextGaussian()) * 10) / 10.0;
+            noise[i] = random.nextDouble();
+        }
+        PerformanceSummary metrics = new PerformanceSummary(
+                List.of(new PerformanceSummary.Average("Avg Output", "watts", 180)),
+                io.allezgo.units.Seconds.of(n),
+                ticks,
+                List.of(
+                        new PerformanceSummary.Metric("Heart Rate", "bpm", 150, 159, heartRate),
+                        new PerformanceSummary.Metric("Output", "watts", 180, 280, output),
+                        new PerformanceSummary.Metric("Noise", null, 0.5, 1.0, noise)),
+                List.of(new Ride.Segment("Warmup", io.allezgo.units.Seconds.of(0), io.allezgo.units.Seconds.of(n))),
+                List.of(new PerformanceSummary.Summary("Calories", "kcal", 500)));
+
+        byte[] encoded = WorkoutCodec.encode(metrics);
+        PerformanceSummary decoded = WorkoutCodec.decode(java.nio.ByteBuffer.wrap(encoded));
+
+        assertThat(decoded.ticks()).isEqualTo(ticks);
+        assertThat(decoded.metric("Heart Rate").values()).isEqualTo(heartRate);
+        assertThat(decoded.metric("Output").values()).isEqualTo(output);
+        assertThat(decoded.metric("Noise").values()).isEqualTo(noise);
+        assertThat(decoded.metric("Noise").unit()).isNull();
+        assertThat(decoded.segments()).isEqualTo(metrics.segments());
+        assertThat(decoded.summaries()).isEqualTo(metrics.summaries());
+        // ticks and a steady heart rate cost about a bit per sample, power around 1.5 bytes
+        int incompressible = n * Double.BYTES;
+        assertThat(encoded.length - incompressible).isLessThan(n * 2);
+    }
+
+    private static <T> T read(String name, Class<T> type) throws IOException {
+        try (InputStream in = WorkoutStoreTests.class.getResourceAsStream("/io/allezgo/adapters/peloton/" + name)) {
+            return mapper.readValue(in, type);
+        }
+    }
+}
@@ -7,6 +7,7 @@ plugins {
     id("com.google.cloud.tools.jib") version "3.4.3" apply false
     id("com.palantir.consistent-versions") version "2.25.0"
     id("com.markelliot.versions") version "0.43.0"
+    id("me.champeau.jmh") version "0.7.2" apply false
     id("net.ltgt.errorprone") version "4.0.1" apply false
     id("org.inferred.processors") version "3.7.0" apply false
 }
@@ -1,3 +1,4 @@
 rootProject.name = "allezgo"
 
+include("allezgo-benchmarks")
 include("allezgo-service")